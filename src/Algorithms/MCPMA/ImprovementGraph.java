@@ -4,13 +4,13 @@ import HousingMarket.House.House;
 import HousingMarket.Household.Household;
 import HousingMarket.HousingMarketVertex;
 import Main.GradingStrategy;
+import Matching.IndexSpace;
 import Matching.Matching;
-import Main.Grader;
+import Main.GradeFunction;
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.jgrapht.graph.SimpleWeightedGraph;
 
 import java.util.ArrayList;
-import java.util.Optional;
 
 public class ImprovementGraph {
     private SimpleWeightedGraph<HousingMarketVertex, DefaultWeightedEdge> improvementGraph
@@ -21,12 +21,16 @@ public class ImprovementGraph {
     private ArrayList<DummyHouse> dummyHouses = new ArrayList<DummyHouse>();
     private ArrayList<DummyHousehold> dummyHouseholds = new ArrayList<DummyHousehold>();
     private int nextDummyID;
-    Grader grader;
+    // Numbers the houses followed by the dummy houses, and the households followed by the dummy households.
+    private IndexSpace indexSpace;
+    private HousingMarketVertex[] houseSideVertices;
+    private HousingMarketVertex[] householdSideVertices;
+    GradeFunction grades;
 
     // Warning: This algorithm takes only empty houses into account if MCPMAStrategy == Improvement.
     public ImprovementGraph(Matching matching, MCPMAStrategy mcpmaStrategy, GradingStrategy gradingStrategy) throws Matching.HouseholdLinkedToMultipleException, Matching.HouseholdLinkedToHouseholdException {
         this.matching = matching;
-        this.grader = matching.getGrader();
+        this.grades = matching.getGrader().forStrategy(gradingStrategy);
         this.households = new ArrayList<>(matching.getHouseholds().size());
 
         // Default case |H| == |F|
@@ -76,15 +80,35 @@ public class ImprovementGraph {
             }
         }
 
+        ArrayList<HousingMarketVertex> houseSide = new ArrayList<HousingMarketVertex>(this.houses);
+        houseSide.addAll(this.dummyHouses);
+        ArrayList<HousingMarketVertex> householdSide = new ArrayList<HousingMarketVertex>(this.households);
+        householdSide.addAll(this.dummyHouseholds);
+        this.indexSpace = new IndexSpace(houseSide, householdSide);
+        this.houseSideVertices = houseSide.toArray(new HousingMarketVertex[0]);
+        this.householdSideVertices = householdSide.toArray(new HousingMarketVertex[0]);
+
         // Create edges and assign weights for regular houses and households
+        // Each household grades all houses in one row; with REGULAR these are all houses of the matching, in its order.
+        int[] houseIDs = new int[this.houses.size()];
+        for (int i = 0; i < houseIDs.length; i++) {
+            houseIDs[i] = this.houses.get(i).getID();
+        }
+        float[] row = new float[houseIDs.length];
         for (Household household : this.households){
-            House currentHouseholdMatch = matching.getHouseFromHousehold(household.getID());
+            int currentHouseholdMatchID = matching.getHouseIDOfHousehold(household.getID());
             float currentHouseholdFit = 0;
-            if (currentHouseholdMatch != null) {
-                currentHouseholdFit = grader.apply(currentHouseholdMatch.getID(), household.getID(), gradingStrategy);
+            if (currentHouseholdMatchID != Matching.NO_ID) {
+                currentHouseholdFit = grades.grade(currentHouseholdMatchID, household.getID());
             }
-            for (House house : this.houses) {
-                float fitWithHouse = grader.apply(house.getID(), household.getID(), gradingStrategy);
+            if (mcpmaStrategy == MCPMAStrategy.REGULAR) {
+                grades.gradeRow(matching.getIndexSpace(), household.getID(), row);
+            } else {
+                grades.gradeAll(houseIDs, houseIDs.length, household.getID(), row);
+            }
+            for (int i = 0; i < houseIDs.length; i++) {
+                House house = this.houses.get(i);
+                float fitWithHouse = row[i];
                 DefaultWeightedEdge edge = this.improvementGraph.addEdge(house, household);
                 switch (mcpmaStrategy) {
                     case REGULAR:
@@ -163,34 +187,26 @@ public class ImprovementGraph {
         return households;
     }
 
+    // Also finds dummy houses. Returns null if there is no house with this ID in the graph.
     public HousingMarketVertex getHouseFromID(int ID) {
-        Optional<House> result = this.houses.stream()
-                .filter(h -> h.getID() == ID)
-                .findFirst();
-        if (result.isPresent()) {
-            return result.get();
-        } else {
-
-            Optional<DummyHouse> dummyResult = this.dummyHouses.stream()
-                    .filter(h -> h.getID() == ID)
-                    .findFirst();
-            return dummyResult.orElse(null);
+        int index = indexSpace.getHouseIndex(ID);
+        if (index == IndexSpace.NO_INDEX) {
+            return null;
         }
+        return houseSideVertices[index];
     }
 
+    // Also finds dummy households. Returns null if there is no household with this ID in the graph.
     public HousingMarketVertex getHouseholdFromID(int ID) {
-        Optional<Household> result = this.households.stream()
-                .filter(h -> h.getID() == ID)
-                .findFirst();
-        if (result.isPresent()) {
-            return result.get();
-        } else {
-
-            Optional<DummyHousehold> dummyResult = this.dummyHouseholds.stream()
-                    .filter(h -> h.getID() == ID)
-                    .findFirst();
-            return dummyResult.orElse(null);
+        int index = indexSpace.getHouseholdIndex(ID);
+        if (index == IndexSpace.NO_INDEX) {
+            return null;
         }
+        return householdSideVertices[index];
+    }
+
+    public IndexSpace getIndexSpace() {
+        return indexSpace;
     }
 
     public ArrayList<DummyHouse> getDummyHouses() {
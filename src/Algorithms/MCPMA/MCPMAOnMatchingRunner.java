@@ -6,9 +6,9 @@ import HousingMarket.HousingMarketVertex;
 import Main.GradingStrategy;
 import Matching.Matching;
 import Matching.MatchingEvaluator;
+import Miscellaneous.CloneStatistics;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleGraph;
-import static Miscellaneous.DeepCloner.deepClone;
 
 public class MCPMAOnMatchingRunner {
 
@@ -19,7 +19,8 @@ public class MCPMAOnMatchingRunner {
     private MCPMA MCPMA;
 
     public MCPMAOnMatchingRunner(Matching matching, MCPMAStrategy mcpmaStrategy, GradingStrategy gradingStrategy) throws Matching.HouseholdLinkedToMultipleException, Matching.HouseholdLinkedToHouseholdException, MCPMA.UnequalSidesException, InterruptedException {
-        this.matching = (Matching) deepClone(matching);
+        this.matching = CloneStatistics.copy(CloneStatistics.Site.MCPMA_RUNNER, matching, Matching::copy,
+                Matching::estimateCopyBytes);
         this.mcpmaStrategy = mcpmaStrategy;
         improvementGraph = new ImprovementGraph(this.matching, mcpmaStrategy, gradingStrategy);
         MCPMA = new MCPMA(improvementGraph, mcpmaStrategy);
@@ -79,9 +80,9 @@ public class MCPMAOnMatchingRunner {
                     household = (Household) source;
                 }
                 // First disconnect from existing house...
-                House oldHouse = matching.getHouseFromHousehold(household.getID());
-                if (oldHouse != null) {
-                    matching.disconnect(oldHouse.getID(), household.getID());
+                int oldHouseID = matching.getHouseIDOfHousehold(household.getID());
+                if (oldHouseID != Matching.NO_ID) {
+                    matching.disconnect(oldHouseID, household.getID());
                 }
                 // ...then connect to new house.
                 matching.connect(house.getID(), household.getID());
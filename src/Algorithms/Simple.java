@@ -1,14 +1,13 @@
 package Algorithms;
 
-import HousingMarket.House.House;
-import HousingMarket.Household.Household;
+import Main.GradeFunction;
+import Main.GradeRows;
 import Main.GradingStrategy;
+import Main.PreferenceLists;
+import Matching.IndexSpace;
 import Matching.Matching;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
-import static Miscellaneous.DeepCloner.deepClone;
+import java.util.Random;
 
 public class Simple {
 
@@ -21,35 +20,97 @@ public class Simple {
     }
 
     public Matching run() throws Matching.HouseholdLinkedToMultipleException, Matching.HouseholdLinkedToHouseholdException, Matching.HouseholdAlreadyMatchedException, Matching.HouseAlreadyMatchedException {
-        ArrayList<Household> households = (ArrayList<Household>) deepClone(matching.getHouseholds());
-        Collections.shuffle(households);
-        ArrayList<Integer> initiallyEmptyHouseIDs = new ArrayList<>();
-        initiallyEmptyHouseIDs.addAll(matching.getHouseholdlessHousesIDs());
-        for (Household household : households) {
-            float currentFit = 0;
-            boolean hasHouse = false;
-            if (matching.getHouseFromHousehold(household.getID()) != null) {
-                House currentHouse = matching.getHouseFromHousehold(household.getID());
-                currentFit = matching.grade(currentHouse.getID(), household.getID(), gradingStrategy);
-                hasHouse = true;
-            }
-            float highscore = currentFit;
-            int bestHouseID = -1;
+        IndexSpace indexSpace = matching.getIndexSpace();
+        GradeFunction grades = matching.getGrader().forStrategy(gradingStrategy);
+        int[] householdIDs = indexSpace.getHouseholdIDs();
+        shuffle(householdIDs);
+        int[] initiallyEmptyHouseIDs = new int[matching.getHouseholdlessHousesIDs().size()];
+        int i = 0;
+        for (int ID : matching.getHouseholdlessHousesIDs()) {
+            initiallyEmptyHouseIDs[i] = ID;
+            i++;
+        }
+        // If the Grader has preference lists for the strategy, a household's best initially empty house that is still
+        // available is found near the top of its list, so there is no need to grade them all. Either way, ties go to
+        // the lowest house ID.
+        PreferenceLists preferences = matching.getGrader().getPreferenceLists(gradingStrategy);
+        if (preferences != null) {
+            // Per house index of _preferences_; whether the house is initially empty and not yet taken.
+            boolean[] available = new boolean[preferences.getIndexSpace().getHouseCount()];
             for (int ID : initiallyEmptyHouseIDs) {
-                float candidateFit = matching.grade(ID, household.getID(), gradingStrategy);
-                if (candidateFit > highscore) {
-                    highscore = candidateFit;
-                    bestHouseID = ID;
-                }
+                available[preferences.getIndexSpace().getHouseIndex(ID)] = true;
             }
-            if (bestHouseID != -1) {
-                if (hasHouse) {
-                    matching.disconnect(matching.getHouseFromHousehold(household.getID()).getID(), household.getID());
+            for (int householdID : householdIDs) {
+                int currentHouseID = matching.getHouseIDOfHousehold(householdID);
+                float currentFit = currentHouseID == Matching.NO_ID ? 0 : grades.grade(currentHouseID, householdID);
+                int householdIndex = preferences.getIndexSpace().getHouseholdIndex(householdID);
+                int bestHouseIndex = householdIndex == IndexSpace.NO_INDEX
+                        ? bestAvailableHouse(preferences.getIndexSpace(), available, grades, householdID, currentFit)
+                        : preferences.lastTiedAmong(householdIndex, preferences.countAbove(householdIndex, currentFit),
+                                houseIndex -> available[houseIndex]);
+                if (bestHouseIndex != IndexSpace.NO_INDEX) {
+                    moveHousehold(householdID, currentHouseID, preferences.getIndexSpace().getHouseID(bestHouseIndex));
+                    available[bestHouseIndex] = false;
                 }
-                matching.connect(bestHouseID, household.getID());
-                initiallyEmptyHouseIDs.remove(Integer.valueOf(bestHouseID));
+            }
+            return matching;
+        }
+        // Without preference lists, the initially empty houses that are still available are kept at the front of
+        // _initiallyEmptyHouseIDs_, in their original order, so that they can be graded in one row per household.
+        int availableCount = initiallyEmptyHouseIDs.length;
+        float[] row = new float[availableCount];
+        for (int householdID : householdIDs) {
+            int currentHouseID = matching.getHouseIDOfHousehold(householdID);
+            float currentFit = currentHouseID == Matching.NO_ID ? 0 : grades.grade(currentHouseID, householdID);
+            grades.gradeAll(initiallyEmptyHouseIDs, availableCount, householdID, row);
+            int bestPosition = GradeRows.indexOfMax(row, availableCount, currentFit);
+            if (bestPosition != -1) {
+                moveHousehold(householdID, currentHouseID, initiallyEmptyHouseIDs[bestPosition]);
+                System.arraycopy(initiallyEmptyHouseIDs, bestPosition + 1, initiallyEmptyHouseIDs, bestPosition,
+                        availableCount - bestPosition - 1);
+                availableCount--;
             }
         }
         return matching;
     }
+
+    private void moveHousehold(int householdID, int currentHouseID, int newHouseID) throws Matching.HouseholdLinkedToMultipleException, Matching.HouseholdLinkedToHouseholdException, Matching.HouseholdAlreadyMatchedException, Matching.HouseAlreadyMatchedException {
+        if (currentHouseID != Matching.NO_ID) {
+            matching.disconnect(currentHouseID, householdID);
+        }
+        matching.connect(newHouseID, householdID);
+    }
+
+    // For a household that the preference lists do not know: the index of its best house among the _available_ ones,
+    // graded in ascending order of ID, if it is better than _currentFit_; IndexSpace.NO_INDEX otherwise.
+    private static int bestAvailableHouse(IndexSpace indexSpace, boolean[] available, GradeFunction grades,
+                                          int householdID, float currentFit) {
+        int bestHouseIndex = IndexSpace.NO_INDEX;
+        int bestHouseID = Integer.MAX_VALUE;
+        float highscore = currentFit;
+        for (int houseIndex = 0; houseIndex < available.length; houseIndex++) {
+            if (available[houseIndex]) {
+                int houseID = indexSpace.getHouseID(houseIndex);
+                float grade = grades.grade(houseID, householdID);
+                if (grade > highscore || (grade == highscore && bestHouseIndex != IndexSpace.NO_INDEX
+                        && houseID < bestHouseID)) {
+                    highscore = grade;
+                    bestHouseIndex = houseIndex;
+                    bestHouseID = houseID;
+                }
+            }
+        }
+        return bestHouseIndex;
+    }
+
+    // Fisher-Yates, as done by Collections.shuffle.
+    private static void shuffle(int[] values) {
+        Random random = new Random();
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
 }
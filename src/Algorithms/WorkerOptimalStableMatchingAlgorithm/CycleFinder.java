@@ -1,8 +1,9 @@
 package Algorithms.WorkerOptimalStableMatchingAlgorithm;
 
+import Matching.IndexSpace;
+import Miscellaneous.CloneStatistics;
 import org.jgrapht.graph.AsSubgraph;
 import org.jgrapht.graph.DefaultWeightedEdge;
-import static Miscellaneous.DeepCloner.deepClone;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -14,21 +15,29 @@ public class CycleFinder {
 
     private AsSubgraph<Integer, DefaultWeightedEdge> graph;
     List<Integer> vertices;
-    // Takes vertex, returns state in {0 = unexplored | 1 = being explored}.
-    private HashMap<Integer, Integer> states = new HashMap<Integer, Integer>();
+    // Takes vertex's household index (see IndexSpace; nil comes last),
+    // returns state in {0 = unexplored | 1 = being explored | 2 = fully explored}.
+    private int[] states;
+    private IndexSpace indexSpace;
     private Set<Integer> householdIDsMovedByWOSMA;
     private int nilValue;
 
-    public CycleFinder(AsSubgraph<Integer, DefaultWeightedEdge> graph, Set<Integer> householdIDsMovedByWOSMA, int nilValue) {
+    public CycleFinder(AsSubgraph<Integer, DefaultWeightedEdge> graph, IndexSpace indexSpace, Set<Integer> householdIDsMovedByWOSMA, int nilValue) {
         this.graph = graph;
         this.vertices = new ArrayList<>(graph.vertexSet());
-        for (int vertex : vertices) {
-            states.put(vertex, 0);
-        }
+        this.indexSpace = indexSpace;
+        this.states = new int[indexSpace.getHouseholdCount() + 1];
         this.householdIDsMovedByWOSMA = householdIDsMovedByWOSMA;
         this.nilValue = nilValue;
     }
 
+    private int stateIndex(int vertex) {
+        if (vertex == nilValue) {
+            return states.length - 1;
+        }
+        return indexSpace.getHouseholdIndex(vertex);
+    }
+
     public List<Integer> findCycle() throws FullyExploredVertexDiscoveredException, InterruptedException {
         // Implements simple DFS. Returns the first cycle that it can find.
         // Two conditions need to hold:
@@ -56,7 +65,7 @@ public class CycleFinder {
         }
 
         int vertex = path.get(path.size()-1);
-        states.put(vertex, 1);
+        states[stateIndex(vertex)] = 1;
         Set<DefaultWeightedEdge> outgoingEdges = graph.outgoingEdgesOf(vertex);
         for (DefaultWeightedEdge edge : outgoingEdges) {
             // Condition 2 check. Only traverse this edge if it succeeds.
@@ -65,7 +74,8 @@ public class CycleFinder {
                 // Is neighbor present in path (because it is currently being discovered)?
                 // Then we only want to return the cycle in this path if it contains a strict edge.
                 // Otherwise, do nothing. At any rate there is no need to traverse this neighbor.
-                if (states.get(neighbor) == 1) {
+                int neighborState = states[stateIndex(neighbor)];
+                if (neighborState == 1) {
                     int pathStart = path.indexOf(neighbor);
                     List<Integer> potentialCycle = path.subList(pathStart, path.size());
                     // Condition 1 check. Only return cycle if it contains a strict edge. Otherwise, continue looking.
@@ -74,8 +84,8 @@ public class CycleFinder {
                     }
                 } else
                     // Has neighbor not been discovered yet? Then explore it.
-                    if (states.get(neighbor) == 0) {
-                    ArrayList<Integer> recursedPath = (ArrayList<Integer>) deepClone(path);
+                    if (neighborState == 0) {
+                    ArrayList<Integer> recursedPath = CloneStatistics.copyList(CloneStatistics.Site.CYCLE_FINDER, path);
                     recursedPath.add(neighbor);
                     List<Integer> cycle = recursivelyFindCycle(recursedPath);
                     if (cycle != null) {
@@ -84,7 +94,7 @@ public class CycleFinder {
                             return cycle;
                         }
                     }
-                } else { // states.get(neighbor) == 2
+                } else { // neighborState == 2
                         continue; // We know that if we find a fully explored node, it won't give us a valid cycle.
                         // Note that fully explored nodes may yet be found.
                         // Example: Suppose that we have fully explored node w1 along all of its valid edges.
@@ -96,7 +106,7 @@ public class CycleFinder {
                     }
             }
         }
-        states.put(vertex, 2);
+        states[stateIndex(vertex)] = 2;
         return null;
     }
 
@@ -3,7 +3,11 @@ package Algorithms.WorkerOptimalStableMatchingAlgorithm;
 import Main.AlgorithmStrategy;
 import HousingMarket.House.House;
 import HousingMarket.Household.Household;
+import Main.GradeFunction;
+import Main.GradeRows;
 import Main.GradingStrategy;
+import Main.PreferenceLists;
+import Matching.IndexSpace;
 import Matching.Matching;
 import Matching.MatchingEvaluator;
 import org.jgrapht.alg.connectivity.GabowStrongConnectivityInspector;
@@ -25,11 +29,22 @@ public class TwoLabeledGraph {
     private AlgorithmStrategy algorithmStrategy;
     private HashMap<Integer, Integer> householdInitialHouseMap = new HashMap<Integer,Integer>();
     private GradingStrategy gradingStrategy;
+    // Resolved from the matching's Grader for _gradingStrategy_ whenever the matching is set.
+    private GradeFunction grades;
+    // Likewise; null if the Grader has none for _gradingStrategy_. See collectCandidateHouses.
+    private PreferenceLists preferences;
+    // Scratch space of collectCandidateHouses.
+    private long[] candidateMarks = new long[0];
+    private int[] candidateHouseIDs = new int[0];
+    private float[] candidateFits = new float[0];
+    private float[] candidateRow = new float[0];
 
     public TwoLabeledGraph(Matching matching, AlgorithmStrategy algorithmStrategy, GradingStrategy gradingStrategy) throws Matching.HouseholdLinkedToHouseholdException, Matching.HouseLinkedToMultipleException, Matching.HouseholdLinkedToMultipleException, Matching.HouseLinkedToHouseException, MatchingEvaluator.HouseholdIncomeTooHighException {
         this.matching = matching;
         this.algorithmStrategy = algorithmStrategy;
         this.gradingStrategy = gradingStrategy;
+        this.grades = matching.getGrader().forStrategy(gradingStrategy);
+        this.preferences = matching.getGrader().getPreferenceLists(gradingStrategy);
         householdIDs = new ArrayList<Integer>(matching.getHouseholds().size());
 
         // Add vertices.
@@ -42,9 +57,9 @@ public class TwoLabeledGraph {
 
         if (algorithmStrategy == AlgorithmStrategy.WOSMA_IRCYCLES) {
             for (Household household : this.matching.getHouseholds()) {
-                House house = this.matching.getHouseFromHousehold(household.getID());
-                if (house != null && matching.getGrader().apply(house.getID(), household.getID(), gradingStrategy) > 0) {
-                    householdInitialHouseMap.put(household.getID(), house.getID());
+                int houseID = this.matching.getHouseIDOfHousehold(household.getID());
+                if (houseID != Matching.NO_ID && grades.grade(houseID, household.getID()) > 0) {
+                    householdInitialHouseMap.put(household.getID(), houseID);
                 }
             }
         }
@@ -64,46 +79,42 @@ public class TwoLabeledGraph {
         // Add edges. Types here refer to the first three types noted in the paper's description of the WOSMA-algorithm.
 
         for (Integer householdID : householdIDs) {
-            House currentHouse = matching.getHouseFromHousehold(householdID);
-            float fitWithCurrentHouse = addType3Cond1EdgeToHousehold(householdID, currentHouse, gradingStrategy);
-
-
-            for (House otherHouse : this.matching.getHouses()) {
-                if (currentHouse != null) {
-                    if (otherHouse.getID() == currentHouse.getID()) {
-                        continue;
-                    }
+            int currentHouseID = matching.getHouseIDOfHousehold(householdID);
+            float fitWithCurrentHouse = addType3Cond1EdgeToHousehold(householdID, currentHouseID, gradingStrategy);
+
+            int candidateCount = collectCandidateHouses(householdID, fitWithCurrentHouse, false);
+            for (int i = 0; i < candidateCount; i++) {
+                int otherHouseID = candidateHouseIDs[i];
+                if (otherHouseID == currentHouseID) {
+                    continue;
                 }
-                float fitWithOtherHouse = this.matching.getGrader().apply(otherHouse.getID(), householdID, gradingStrategy);
-                if (fitWithOtherHouse >= fitWithCurrentHouse) {
-                    Household householdOfOtherHouse = this.matching.getHouseholdFromHouse(otherHouse.getID());
-                    if (householdOfOtherHouse == null) {
-                        // Add type 2 edge
-                        underlyingStrictGraph.addEdge(householdID, nil);
-                        if (fitWithOtherHouse > fitWithCurrentHouse) {
-                            underlyingStrictGraph.setEdgeWeight(householdID, nil, 1);
-                            break; // All nonzero weight values are treated the same since !findMax, so no need to continue.
-
-                        } else { // fitWithOtherHouse == fitWithCurrentHouse
-                            underlyingStrictGraph.setEdgeWeight(householdID, nil, 0);
-                        }
-                    } else {
-                        // Add type 1 edge
-                        underlyingStrictGraph.addEdge(householdID, householdOfOtherHouse.getID());
-                        if (fitWithOtherHouse > fitWithCurrentHouse) {
-                            underlyingStrictGraph.setEdgeWeight(householdID, householdOfOtherHouse.getID(), 1);
-                        } else { // fitWithOtherHouse == fitWithCurrentHouse
-                            underlyingStrictGraph.setEdgeWeight(householdID, householdOfOtherHouse.getID(), 0);
-                        }
+                float fitWithOtherHouse = candidateFits[i];
+                int householdOfOtherHouseID = this.matching.getHouseholdIDOfHouse(otherHouseID);
+                if (householdOfOtherHouseID == Matching.NO_ID) {
+                    // Add type 2 edge
+                    underlyingStrictGraph.addEdge(householdID, nil);
+                    if (fitWithOtherHouse > fitWithCurrentHouse) {
+                        underlyingStrictGraph.setEdgeWeight(householdID, nil, 1);
+                        break; // All nonzero weight values are treated the same since !findMax, so no need to continue.
+
+                    } else { // fitWithOtherHouse == fitWithCurrentHouse
+                        underlyingStrictGraph.setEdgeWeight(householdID, nil, 0);
+                    }
+                } else {
+                    // Add type 1 edge
+                    underlyingStrictGraph.addEdge(householdID, householdOfOtherHouseID);
+                    if (fitWithOtherHouse > fitWithCurrentHouse) {
+                        underlyingStrictGraph.setEdgeWeight(householdID, householdOfOtherHouseID, 1);
+                    } else { // fitWithOtherHouse == fitWithCurrentHouse
+                        underlyingStrictGraph.setEdgeWeight(householdID, householdOfOtherHouseID, 0);
                     }
                 }
             }
         }
 
         for (Integer householdID : householdIDs) {
-            House currentHouse = matching.getHouseFromHousehold(householdID);
             // If the household does not own a house, then the following edge will already have been added.
-            if (currentHouse != null) {
+            if (matching.isHouseholdMatched(householdID)) {
                 if (sumWeightOfEdges(underlyingStrictGraph.incomingEdgesOf(householdID)) == 0) {
                     // Add type 3 edge, condition 2.
                     // If the above edge-additive process did not cause the current household to receive any incoming
@@ -122,31 +133,29 @@ public class TwoLabeledGraph {
         // Add edges. Types here refer to the first three types noted in the paper's description of the WOSMA-algorithm.
 
         for (Integer householdID : householdIDs) {
-            House currentHouse = matching.getHouseFromHousehold(householdID);
-            float fitWithCurrentHouse = addType3Cond1EdgeToHousehold(householdID, currentHouse, gradingStrategy);
+            int currentHouseID = matching.getHouseIDOfHousehold(householdID);
+            float fitWithCurrentHouse = addType3Cond1EdgeToHousehold(householdID, currentHouseID, gradingStrategy);
 
             float highScore = 0;
 
-            for (House otherHouse : this.matching.getHouses()) {
-                if (currentHouse != null) {
-                    if (otherHouse.getID() == currentHouse.getID()) {
-                        continue;
-                    }
+            int candidateCount = collectCandidateHouses(householdID, fitWithCurrentHouse, false);
+            for (int i = 0; i < candidateCount; i++) {
+                int otherHouseID = candidateHouseIDs[i];
+                if (otherHouseID == currentHouseID) {
+                    continue;
                 }
-                float fitWithOtherHouse = this.matching.getGrader().apply(otherHouse.getID(), householdID, gradingStrategy);
-                if (fitWithOtherHouse >= fitWithCurrentHouse) {
-                    Household householdOfOtherHouse = this.matching.getHouseholdFromHouse(otherHouse.getID());
-                    if (householdOfOtherHouse == null) {
-                        // Type 2 edge
-                        if (fitWithOtherHouse > fitWithCurrentHouse && fitWithOtherHouse - fitWithCurrentHouse > highScore) {
-                            highScore = fitWithOtherHouse - fitWithCurrentHouse;
-                        }
-                    } else {
-                        // Add type 1 edge
-                        if (fitWithOtherHouse > fitWithCurrentHouse) {
-                            underlyingStrictGraph.addEdge(householdID, householdOfOtherHouse.getID());
-                            underlyingStrictGraph.setEdgeWeight(householdID, householdOfOtherHouse.getID(), fitWithOtherHouse - fitWithCurrentHouse);
-                        }
+                float fitWithOtherHouse = candidateFits[i];
+                int householdOfOtherHouseID = this.matching.getHouseholdIDOfHouse(otherHouseID);
+                if (householdOfOtherHouseID == Matching.NO_ID) {
+                    // Type 2 edge
+                    if (fitWithOtherHouse > fitWithCurrentHouse && fitWithOtherHouse - fitWithCurrentHouse > highScore) {
+                        highScore = fitWithOtherHouse - fitWithCurrentHouse;
+                    }
+                } else {
+                    // Add type 1 edge
+                    if (fitWithOtherHouse > fitWithCurrentHouse) {
+                        underlyingStrictGraph.addEdge(householdID, householdOfOtherHouseID);
+                        underlyingStrictGraph.setEdgeWeight(householdID, householdOfOtherHouseID, fitWithOtherHouse - fitWithCurrentHouse);
                     }
                 }
             }
@@ -158,9 +167,8 @@ public class TwoLabeledGraph {
         }
 
         for (Integer householdID : householdIDs) {
-            House currentHouse = matching.getHouseFromHousehold(householdID);
             // If the household does not own a house, then the following edge will already have been added.
-            if (currentHouse != null) {
+            if (matching.isHouseholdMatched(householdID)) {
                 if (underlyingStrictGraph.incomingEdgesOf(householdID).isEmpty()) {
                     // Add type 3 edge, condition 2.
                     // If the above edge-additive process did not cause the current household to receive any incoming
@@ -186,7 +194,7 @@ public class TwoLabeledGraph {
 
             if (householdInitialHouseMap.containsKey(householdID)) {
                 initialHouse = matching.getHouse(householdInitialHouseMap.get(householdID));
-                initialFit = this.matching.getGrader().apply(initialHouse.getID(), householdID, gradingStrategy);
+                initialFit = grades.grade(initialHouse.getID(), householdID);
             }
 //
             // Anyone may, at a first approximation, be moved in such a way that their current house isn't immediately filled up.
@@ -195,9 +203,9 @@ public class TwoLabeledGraph {
             underlyingStrictGraph.setEdgeWeight(nil, householdID, 0);
 
             float currentFit = 0;
-            House currentHouse = matching.getHouseFromHousehold(householdID);
-            if (currentHouse != null) {
-                currentFit = this.matching.getGrader().apply(currentHouse.getID(), householdID, gradingStrategy);
+            int currentHouseID = matching.getHouseIDOfHousehold(householdID);
+            if (currentHouseID != Matching.NO_ID) {
+                currentFit = grades.grade(currentHouseID, householdID);
             }
 
             // HighScoreFree eventually represents the highest improvement that may be gained by moving
@@ -209,17 +217,18 @@ public class TwoLabeledGraph {
             // and then moving to our initial house, which is an improvement of at least -1 + initialFit.
             float highScoreFree = -1 + initialFit;
 
-            for (House house : this.matching.getHouses()) {
-                float candidateFit = this.matching.getGrader().apply(house.getID(), householdID, gradingStrategy);
-                Household householdOfCandidateHouse = matching.getHouseholdFromHouse(house.getID());
-                if (householdOfCandidateHouse != null && householdOfCandidateHouse.getID() != householdID) {
-                    if (candidateFit > initialFit) {
-                        // Add type 1 edge.
-                        underlyingStrictGraph.addEdge(householdID, householdOfCandidateHouse.getID());
-                        underlyingStrictGraph.setEdgeWeight(householdID, householdOfCandidateHouse.getID(), candidateFit - currentFit);
-                    }
+            // Houses the household grades no higher than its initial house get no edge either way.
+            int candidateCount = collectCandidateHouses(householdID, initialFit, true);
+            for (int i = 0; i < candidateCount; i++) {
+                int candidateHouseID = candidateHouseIDs[i];
+                float candidateFit = candidateFits[i];
+                int householdOfCandidateHouseID = matching.getHouseholdIDOfHouse(candidateHouseID);
+                if (householdOfCandidateHouseID != Matching.NO_ID && householdOfCandidateHouseID != householdID) {
+                    // Add type 1 edge.
+                    underlyingStrictGraph.addEdge(householdID, householdOfCandidateHouseID);
+                    underlyingStrictGraph.setEdgeWeight(householdID, householdOfCandidateHouseID, candidateFit - currentFit);
                 } else {
-                    if (candidateFit > initialFit && candidateFit - currentFit > highScoreFree && (currentHouse == null || house.getID() != currentHouse.getID())) {
+                    if (candidateFit - currentFit > highScoreFree && candidateHouseID != currentHouseID) {
                         highScoreFree = candidateFit - currentFit;
                     }
                 }
@@ -245,19 +254,19 @@ public class TwoLabeledGraph {
             // However, if we already have some edge to nil, it means there is some other free house which we prefer.
             // In that case we needn't replace that edge with this lower one.
             if (householdInitialHouseMap.containsKey(householdID)) {
-                House currentHouse = matching.getHouseFromHousehold(householdID);
-                House initialHouse = matching.getHouse(householdInitialHouseMap.get(householdID));
-                float initialFit = this.matching.getGrader().apply(initialHouse.getID(), householdID, gradingStrategy);
+                int currentHouseID = matching.getHouseIDOfHousehold(householdID);
+                int initialHouseID = householdInitialHouseMap.get(householdID);
+                float initialFit = grades.grade(initialHouseID, householdID);
                 float currentFit = 0;
-                if (currentHouse != null) {
-                    currentFit = this.matching.getGrader().apply(currentHouse.getID(), householdID, gradingStrategy);
+                if (currentHouseID != Matching.NO_ID) {
+                    currentFit = grades.grade(currentHouseID, householdID);
                 }
-                Household householdOwningInitialHouse = matching.getHouseholdFromHouse(initialHouse.getID());
-                if (householdOwningInitialHouse != null && householdOwningInitialHouse.getID() != householdID) {
-                    DefaultWeightedEdge edge = (DefaultWeightedEdge) underlyingStrictGraph.addEdge(householdID, householdOwningInitialHouse.getID());
+                int householdOwningInitialHouseID = matching.getHouseholdIDOfHouse(initialHouseID);
+                if (householdOwningInitialHouseID != Matching.NO_ID && householdOwningInitialHouseID != householdID) {
+                    DefaultWeightedEdge edge = (DefaultWeightedEdge) underlyingStrictGraph.addEdge(householdID, householdOwningInitialHouseID);
                     underlyingStrictGraph.setEdgeWeight(edge, initialFit - currentFit);
                 } else
-                    if (!underlyingStrictGraph.containsEdge(householdID, nil) && (householdOwningInitialHouse == null || householdOwningInitialHouse.getID() != householdID)) {
+                    if (!underlyingStrictGraph.containsEdge(householdID, nil) && householdOwningInitialHouseID != householdID) {
                         DefaultWeightedEdge edge = (DefaultWeightedEdge) underlyingStrictGraph.addEdge(householdID, nil);
                         underlyingStrictGraph.setEdgeWeight(edge, initialFit - currentFit);
                     }
@@ -271,6 +280,8 @@ public class TwoLabeledGraph {
 
     public void updateAfterCycleExecution(Matching newMatching) throws Matching.HouseholdLinkedToHouseholdException, Matching.HouseLinkedToMultipleException, Matching.HouseholdLinkedToMultipleException, Matching.HouseLinkedToHouseException, MatchingEvaluator.HouseholdIncomeTooHighException {
         this.matching = newMatching;
+        this.grades = newMatching.getGrader().forStrategy(gradingStrategy);
+        this.preferences = newMatching.getGrader().getPreferenceLists(gradingStrategy);
 
         // Remove all edges
         Set<DefaultWeightedEdge> edges = this.underlyingStrictGraph.edgeSet();
@@ -304,7 +315,7 @@ public class TwoLabeledGraph {
         List<AsSubgraph<Integer, DefaultWeightedEdge>> components = gabowStrongConnectivityInspector.getStronglyConnectedComponents();
         for (AsSubgraph<Integer, DefaultWeightedEdge> component : components) {
             if (component.vertexSet().size() > 1) {
-                CycleFinder cycleFinder = new CycleFinder(component, this.matching.getHouseholdsMovedByWOSMA(), this.getNil());
+                CycleFinder cycleFinder = new CycleFinder(component, this.matching.getIndexSpace(), this.matching.getHouseholdsMovedByWOSMA(), this.getNil());
                 cycle = cycleFinder.findCycle();
                 if (cycle != null) {
                     break;
@@ -388,16 +399,72 @@ public class TwoLabeledGraph {
         return cycle;
     }
 
-    private float addType3Cond1EdgeToHousehold(int householdID, House currentHouse, GradingStrategy gradingStrategy) throws Matching.HouseholdLinkedToMultipleException, Matching.HouseholdLinkedToHouseholdException, MatchingEvaluator.HouseholdIncomeTooHighException {
+    // Puts the IDs of the houses that the household grades at least _minimum_ (more than _minimum_ if _strict_) into
+    // _candidateHouseIDs_, in the order of matching.getHouses(), and their grades into _candidateFits_; returns how
+    // many there are. With preference lists, only those houses are looked at; without, all houses are graded in one
+    // row.
+    private int collectCandidateHouses(int householdID, float minimum, boolean strict) {
+        IndexSpace indexSpace = matching.getIndexSpace();
+        int houseCount = indexSpace.getHouseCount();
+        if (candidateHouseIDs.length < houseCount) {
+            candidateHouseIDs = new int[houseCount];
+            candidateFits = new float[houseCount];
+            candidateRow = new float[houseCount];
+        }
+        int count = 0;
+        int householdIndex = preferences == null ? IndexSpace.NO_INDEX
+                : preferences.getIndexSpace().getHouseholdIndex(householdID);
+        if (householdIndex == IndexSpace.NO_INDEX) {
+            // The house indices of the selected houses are turned into their IDs in place.
+            grades.gradeRow(indexSpace, householdID, candidateRow);
+            count = GradeRows.select(candidateRow, houseCount, minimum, strict, candidateHouseIDs);
+            for (int i = 0; i < count; i++) {
+                int houseIndex = candidateHouseIDs[i];
+                candidateHouseIDs[i] = indexSpace.getHouseID(houseIndex);
+                candidateFits[i] = candidateRow[houseIndex];
+            }
+            return count;
+        }
+
+        // Mark the houses by index in the matching, so that they can be visited in its order.
+        int wordCount = (houseCount + 63) >>> 6;
+        if (candidateMarks.length != wordCount) {
+            candidateMarks = new long[wordCount];
+        }
+        IndexSpace preferenceSpace = preferences.getIndexSpace();
+        int preferredCount = strict ? preferences.countAbove(householdIndex, minimum)
+                : preferences.countAtLeast(householdIndex, minimum);
+        for (int position = 0; position < preferredCount; position++) {
+            int houseID = preferenceSpace.getHouseID(preferences.getHouse(householdIndex, position));
+            int houseIndex = indexSpace.getHouseIndex(houseID);
+            if (houseIndex != IndexSpace.NO_INDEX) {
+                candidateMarks[houseIndex >>> 6] |= 1L << houseIndex;
+            }
+        }
+        for (int word = 0; word < wordCount; word++) {
+            long marks = candidateMarks[word];
+            candidateMarks[word] = 0;
+            while (marks != 0) {
+                int houseID = indexSpace.getHouseID((word << 6) + Long.numberOfTrailingZeros(marks));
+                marks &= marks - 1;
+                candidateHouseIDs[count] = houseID;
+                candidateFits[count] = grades.grade(houseID, householdID);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private float addType3Cond1EdgeToHousehold(int householdID, int currentHouseID, GradingStrategy gradingStrategy) throws Matching.HouseholdLinkedToMultipleException, Matching.HouseholdLinkedToHouseholdException, MatchingEvaluator.HouseholdIncomeTooHighException {
         float fitWithCurrentHouse;
 
-        if (currentHouse == null) {
+        if (currentHouseID == Matching.NO_ID) {
             // Add type 3 edge, condition 1.
             underlyingStrictGraph.addEdge(nil, householdID);
             underlyingStrictGraph.setEdgeWeight(nil, householdID, 0);
             fitWithCurrentHouse = 0;
         } else {
-            fitWithCurrentHouse = this.matching.getGrader().apply(currentHouse.getID(), householdID, gradingStrategy);
+            fitWithCurrentHouse = grades.grade(currentHouseID, householdID);
         }
         return fitWithCurrentHouse;
     }
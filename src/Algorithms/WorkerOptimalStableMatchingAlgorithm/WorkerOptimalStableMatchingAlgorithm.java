@@ -4,8 +4,7 @@ import Main.AlgorithmStrategy;
 import Main.GradingStrategy;
 import Matching.Matching;
 import Matching.MatchingEvaluator;
-
-import static Miscellaneous.DeepCloner.deepClone;
+import Miscellaneous.CloneStatistics;
 
 import java.util.List;
 
@@ -14,7 +13,8 @@ public class WorkerOptimalStableMatchingAlgorithm {
     private TwoLabeledGraph twoLabeledGraph;
 
     public WorkerOptimalStableMatchingAlgorithm(Matching matching) {
-        this.matching = (Matching) deepClone(matching);
+        this.matching = CloneStatistics.copy(CloneStatistics.Site.WOSMA, matching, Matching::copy,
+                Matching::estimateCopyBytes);
     }
 
     public Matching findWorkerOptimalStableMatching(AlgorithmStrategy algorithmStrategy, GradingStrategy gradingStrategy, boolean print) throws Matching.HouseholdLinkedToHouseholdException, Matching.HouseLinkedToMultipleException, Matching.HouseholdLinkedToMultipleException, Matching.HouseLinkedToHouseException, MatchingEvaluator.HouseholdIncomeTooHighException, Matching.HouseholdAlreadyMatchedException, Matching.HouseAlreadyMatchedException, Matching.PreferredNoHouseholdlessHouseException, CycleFinder.FullyExploredVertexDiscoveredException, InterruptedException {
@@ -4,6 +4,7 @@ import HousingMarket.Household.Household;
 import HousingMarket.HousingMarket;
 import Matching.DynamicMatching;
 import Matching.Matching;
+import Miscellaneous.CloneStatistics;
 
 import java.io.File;
 import java.io.IOException;
@@ -57,7 +58,7 @@ public class Experimenter {
                 for (int i = 0; i < nTimes; i++) {
                     Matching matching = setupMatching(inputFileName, 1, startLines[i], lineCount, envRatio);
                     int timestepCount = (int) (Math.min(matching.getHouses().size(), matching.getHouseholds().size()) * timestepRatio);
-                    DynamicMatching dynamicMatching = new DynamicMatching(matching, timestepCount, oneSided);
+                    DynamicMatching dynamicMatching = new DynamicMatching(matching, timestepCount, oneSided, true);
                     dynamicMatchings.add(i, dynamicMatching);
                 }
 
@@ -86,10 +87,15 @@ public class Experimenter {
                     HashSet<AlgorithmStrategy> newSet = interruptedAlgorithmStrategies.get(gradingStrategy);
                     newSet.addAll(comparer.run());
                     interruptedAlgorithmStrategies.put(gradingStrategy, newSet);
+                    // No algorithm will ask for this strategy's grades again, so its tables may go.
+                    for (DynamicMatching dynamicMatching : dynamicMatchings) {
+                        dynamicMatching.getInitialMatching().getGrader().release(gradingStrategy);
+                    }
 
                 }
             }
         }
+        CloneStatistics.printSummary();
     }
 
 
@@ -0,0 +1,23 @@
+package Main;
+
+// The distributions that the random GradingStrategies draw their grades from; see GraderCreator.distributionOf.
+public enum GradeDistribution {
+    NORMAL_LOW_VAR,
+    NORMAL_HIGH_VAR,
+    EXP_LOW_LAMBDA,
+    EXP_HIGH_LAMBDA,
+    UNIFORM;
+
+    public static final double NORMAL_MEAN = 0.5;
+
+    // Standard deviation of the normal distributions, lambda of the exponential ones, and 0 for UNIFORM.
+    public double getParameter() {
+        switch (this) {
+            case NORMAL_LOW_VAR: return 1/18f;
+            case NORMAL_HIGH_VAR: return 1/6f;
+            case EXP_LOW_LAMBDA: return 1;
+            case EXP_HIGH_LAMBDA: return 5;
+            default: return 0;
+        }
+    }
+}
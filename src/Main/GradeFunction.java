@@ -0,0 +1,27 @@
+package Main;
+
+import Matching.IndexSpace;
+
+// Grades of one GradingStrategy, on primitive IDs. Algorithms resolve one through Grader.forStrategy at the start of a
+// run and call it directly from then on, which the JIT can inline, unlike a lookup by strategy on every grade.
+// Loops that compare a household against many houses at once can grade them in one call through gradeAll or gradeRow,
+// and then compare the row in bulk with GradeRows.
+@FunctionalInterface
+public interface GradeFunction {
+
+    float grade(int houseID, int householdID);
+
+    // Puts the grades of the household with the first _count_ houses of _houseIDs_ into _row_, in the same order.
+    default void gradeAll(int[] houseIDs, int count, int householdID, float[] row) {
+        for (int i = 0; i < count; i++) {
+            row[i] = grade(houseIDs[i], householdID);
+        }
+    }
+
+    // Puts the grades of the household with every house of _houses_ into _row_, by house index.
+    default void gradeRow(IndexSpace houses, int householdID, float[] row) {
+        for (int i = 0; i < houses.getHouseCount(); i++) {
+            row[i] = grade(houses.getHouseID(i), householdID);
+        }
+    }
+}
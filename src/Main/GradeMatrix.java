@@ -0,0 +1,121 @@
+package Main;
+
+import Matching.IndexSpace;
+
+import java.nio.FloatBuffer;
+import java.util.function.Consumer;
+
+// The grades of one GradingStrategy for every house and household of an IndexSpace, in one contiguous float[].
+// Stored household-major: the grades of a household for all houses form one row, at householdIndex * houseCount, so
+// that wiring loops over all houses for a household read memory in order.
+// Alternatively, the grades may live in a file mapped by GradeMatrixStore, in which case they are read from a few
+// FloatBuffers of CHUNK_SIZE grades each instead, as a single mapping cannot exceed 2 GB. Only mapped matrices can
+// hold more than MAX_ARRAY_GRADES grades.
+public final class GradeMatrix implements GradeTable {
+
+    static final int CHUNK_SHIFT = 28;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // In grades; 1 GB worth of floats.
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // The most grades one float[] can hold, as arrays of about Integer.MAX_VALUE elements cannot be allocated on every
+    // VM.
+    public static final int MAX_ARRAY_GRADES = Integer.MAX_VALUE - 8;
+
+    // Receives the grades of one household for all houses, in house index order, as they are made. May be called from
+    // several threads at once, for different households; _row_ may be reused once put returns.
+    public interface RowSink {
+        void put(int householdIndex, float[] row);
+    }
+
+    private final IndexSpace indexSpace;
+    private final int houseCount;
+    private final float[] grades; // Null if mapped.
+    private final FloatBuffer[] mappedGrades; // Null if not mapped.
+
+    // _grades_ must hold houseCount * householdCount grades, household-major; it is used as is, not copied.
+    public GradeMatrix(IndexSpace indexSpace, float[] grades) {
+        checkSize(indexSpace, grades.length);
+        this.indexSpace = indexSpace;
+        this.houseCount = indexSpace.getHouseCount();
+        this.grades = grades;
+        this.mappedGrades = null;
+    }
+
+    // Every chunk but the last must hold exactly CHUNK_SIZE grades. See GradeMatrixStore.
+    GradeMatrix(IndexSpace indexSpace, FloatBuffer[] mappedGrades) {
+        long gradeCount = 0;
+        for (FloatBuffer chunk : mappedGrades) {
+            gradeCount += chunk.limit();
+        }
+        checkSize(indexSpace, gradeCount);
+        this.indexSpace = indexSpace;
+        this.houseCount = indexSpace.getHouseCount();
+        this.grades = null;
+        this.mappedGrades = mappedGrades;
+    }
+
+    // Builds a matrix on the heap from the rows _sampler_ puts into the sink it is given.
+    public static GradeMatrix fromRows(IndexSpace indexSpace, Consumer<RowSink> sampler) {
+        int houseCount = indexSpace.getHouseCount();
+        long gradeCount = (long) houseCount * indexSpace.getHouseholdCount();
+        if (gradeCount > MAX_ARRAY_GRADES) {
+            throw new IllegalArgumentException("Too many grades for one matrix on the heap: " + houseCount + " x "
+                    + indexSpace.getHouseholdCount() + " = " + gradeCount + ", at most " + MAX_ARRAY_GRADES
+                    + "; see GradeMatrixStore.");
+        }
+        float[] grades = new float[(int) gradeCount];
+        sampler.accept((householdIndex, row) ->
+                System.arraycopy(row, 0, grades, householdIndex * houseCount, houseCount));
+        return new GradeMatrix(indexSpace, grades);
+    }
+
+    public float grade(int houseID, int householdID) {
+        int houseIndex = indexSpace.getHouseIndex(houseID);
+        int householdIndex = indexSpace.getHouseholdIndex(householdID);
+        if (houseIndex == IndexSpace.NO_INDEX || householdIndex == IndexSpace.NO_INDEX) {
+            throw new IllegalArgumentException("No grade for house " + houseID + " and household " + householdID + ".");
+        }
+        return get((long) householdIndex * houseCount + houseIndex);
+    }
+
+    public float getByIndex(int houseIndex, int householdIndex) {
+        return get((long) householdIndex * houseCount + houseIndex);
+    }
+
+    public void getRow(int householdIndex, float[] row) {
+        long offset = (long) householdIndex * houseCount;
+        if (grades != null) {
+            System.arraycopy(grades, (int) offset, row, 0, houseCount);
+        } else {
+            for (int houseIndex = 0; houseIndex < houseCount; houseIndex++) {
+                row[houseIndex] = get(offset + houseIndex);
+            }
+        }
+    }
+
+    public IndexSpace getIndexSpace() {
+        return indexSpace;
+    }
+
+    public boolean isMapped() {
+        return mappedGrades != null;
+    }
+
+    // Grade at position _i_ in household-major order.
+    float get(long i) {
+        if (grades != null) {
+            return grades[(int) i];
+        }
+        return mappedGrades[(int) (i >>> CHUNK_SHIFT)].get((int) (i & CHUNK_MASK));
+    }
+
+    long size() {
+        return (long) houseCount * indexSpace.getHouseholdCount();
+    }
+
+    private static void checkSize(IndexSpace indexSpace, long gradeCount) {
+        if (gradeCount != (long) indexSpace.getHouseCount() * indexSpace.getHouseholdCount()) {
+            throw new IllegalArgumentException("Expected " + indexSpace.getHouseCount() + " x "
+                    + indexSpace.getHouseholdCount() + " grades, but got " + gradeCount + ".");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package Main;
+
+import Matching.IndexSpace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Directory of GradeMatrices written to disk, so that later runs, and other processes on the same machine, map them
+// read-only instead of sampling them again; mapped matrices of one file share the same pages across all processes.
+// Files are named after a reference, which identifies the instance and the seed (see _reference_), and the strategy.
+// Since equal references give equal grades, it does not matter which of several processes that sample the same
+// matrix at once gets to write it: each writes to a file of its own and moves it into place atomically.
+// Matrices are written row by row as they are sampled, and read through mappings, so neither takes more heap than a
+// row per thread; the page cache and the disk are the limit rather than -Xmx.
+//
+// Layout (little-endian), version 1:
+//   int magic, int version, int strategy ordinal, int houseCount, int householdCount,
+//   float* -- houseCount * householdCount grades, household-major as in GradeMatrix.
+public class GradeMatrixStore {
+
+    public static final int MAGIC = 0x584D5247; // "GRMX" when read little-endian.
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * 4;
+    private static final String SUFFIX = ".grades";
+
+    private final Path directory;
+
+    public GradeMatrixStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Identifies the grades GraderCreator.createTableGrader draws for an instance with a given fingerprint and seed.
+    // This is also what MatchingSnapshot stores as its grade matrix reference.
+    public static String reference(long fingerprint, long seed) {
+        return String.format("%016x-%016x", fingerprint, seed);
+    }
+
+    public Path pathOf(String reference, GradingStrategy gradingStrategy) {
+        return directory.resolve(reference + "-" + gradingStrategy + SUFFIX);
+    }
+
+    public boolean contains(String reference, GradingStrategy gradingStrategy) {
+        return Files.isRegularFile(pathOf(reference, gradingStrategy));
+    }
+
+    // Maps the stored matrix read-only. Returns null if there is none.
+    public GradeMatrix load(String reference, GradingStrategy gradingStrategy, IndexSpace indexSpace)
+            throws IOException, GradeMatrixFormatException {
+        Path path = pathOf(reference, gradingStrategy);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long gradeCount = (long) indexSpace.getHouseCount() * indexSpace.getHouseholdCount();
+            if (channel.size() != HEADER_BYTES + 4 * gradeCount) {
+                throw new GradeMatrixFormatException("Size of " + path + " does not match a "
+                        + indexSpace.getHouseCount() + " x " + indexSpace.getHouseholdCount() + " matrix.");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new GradeMatrixFormatException("Truncated grade matrix: " + path);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new GradeMatrixFormatException("Not a grade matrix: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new GradeMatrixFormatException("Unsupported grade matrix version " + version + " in " + path);
+            }
+            if (header.getInt() != gradingStrategy.ordinal() || header.getInt() != indexSpace.getHouseCount()
+                    || header.getInt() != indexSpace.getHouseholdCount()) {
+                throw new GradeMatrixFormatException(path + " holds grades of another strategy or another instance.");
+            }
+            // Mappings stay valid after the channel is closed.
+            int chunkCount = (int) ((gradeCount + GradeMatrix.CHUNK_SIZE - 1) / GradeMatrix.CHUNK_SIZE);
+            FloatBuffer[] chunks = new FloatBuffer[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                long first = (long) c * GradeMatrix.CHUNK_SIZE;
+                long count = Math.min(GradeMatrix.CHUNK_SIZE, gradeCount - first);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + 4 * first, 4 * count)
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+            return new GradeMatrix(indexSpace, chunks);
+        }
+    }
+
+    // Writes the rows _sampler_ puts into the sink it is given straight to the file, replacing any stored matrix, and
+    // returns the matrix mapped from the written file. Rows may be put from several threads at once and in any order;
+    // every row must be put exactly once.
+    public GradeMatrix create(String reference, GradingStrategy gradingStrategy, IndexSpace indexSpace,
+                              Consumer<GradeMatrix.RowSink> sampler) throws IOException, GradeMatrixFormatException {
+        Files.createDirectories(directory);
+        Path path = pathOf(reference, gradingStrategy);
+        Path temporaryPath = Files.createTempFile(directory, reference + "-" + gradingStrategy, ".tmp");
+        int houseCount = indexSpace.getHouseCount();
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(gradingStrategy.ordinal()).putInt(houseCount)
+                        .putInt(indexSpace.getHouseholdCount());
+                header.flip();
+                writeFully(channel, header, 0);
+                // Positional writes do not move the channel's position, so threads can write their rows at once.
+                ThreadLocal<ByteBuffer> rowBuffers = ThreadLocal.withInitial(
+                        () -> ByteBuffer.allocateDirect(4 * houseCount).order(ByteOrder.LITTLE_ENDIAN));
+                try {
+                    sampler.accept((householdIndex, row) -> {
+                        ByteBuffer rowBuffer = rowBuffers.get();
+                        rowBuffer.clear();
+                        rowBuffer.asFloatBuffer().put(row, 0, houseCount);
+                        try {
+                            writeFully(channel, rowBuffer, HEADER_BYTES + 4L * householdIndex * houseCount);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            try {
+                Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+        return load(reference, gradingStrategy, indexSpace);
+    }
+
+    // Maps the stored matrix if there is a valid one, and otherwise samples it into the store and maps that. Never
+    // fails for want of a working store: if reading or writing goes wrong, the matrix is sampled on the heap instead,
+    // which does fail if it is larger than GradeMatrix.MAX_ARRAY_GRADES.
+    public GradeMatrix loadOrCreate(String reference, GradingStrategy gradingStrategy, IndexSpace indexSpace,
+                                    Consumer<GradeMatrix.RowSink> sampler) {
+        try {
+            GradeMatrix stored = load(reference, gradingStrategy, indexSpace);
+            if (stored != null) {
+                return stored;
+            }
+        } catch (IOException | GradeMatrixFormatException e) {
+            System.err.println("Could not load stored grades, sampling them again: " + e.getMessage());
+        }
+        try {
+            return create(reference, gradingStrategy, indexSpace, sampler);
+        } catch (IOException | GradeMatrixFormatException e) {
+            System.err.println("Could not store grades, sampling them on the heap: " + e.getMessage());
+            return GradeMatrix.fromRows(indexSpace, sampler);
+        }
+    }
+
+    // Writes the remaining bytes of _buffer_ at _position_ in the file.
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public class GradeMatrixFormatException extends Exception {
+        public GradeMatrixFormatException(String errorMessage) { super(errorMessage); }
+    }
+}
@@ -0,0 +1,41 @@
+package Main;
+
+// Bulk comparisons on rows of grades, as filled by GradeFunction.gradeAll and gradeRow. The loops do not branch on the
+// grades themselves, so that the JIT can turn the comparisons into conditional moves rather than mispredicted jumps.
+public final class GradeRows {
+
+    private GradeRows() {
+    }
+
+    // Puts the positions of the grades of at least _minimum_ (more than _minimum_ if _strict_) among the first _count_
+    // of _row_ into _positions_, in order, and returns how many there are. _positions_ must hold _count_ ints.
+    public static int select(float[] row, int count, float minimum, boolean strict, int[] positions) {
+        int selected = 0;
+        if (strict) {
+            for (int i = 0; i < count; i++) {
+                positions[selected] = i;
+                selected += row[i] > minimum ? 1 : 0;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                positions[selected] = i;
+                selected += row[i] >= minimum ? 1 : 0;
+            }
+        }
+        return selected;
+    }
+
+    // The position of the first of the highest grades among the first _count_ of _row_, if it is more than _minimum_;
+    // -1 otherwise.
+    public static int indexOfMax(float[] row, int count, float minimum) {
+        int best = -1;
+        float highscore = minimum;
+        for (int i = 0; i < count; i++) {
+            float grade = row[i];
+            boolean better = grade > highscore;
+            best = better ? i : best;
+            highscore = better ? grade : highscore;
+        }
+        return best;
+    }
+}
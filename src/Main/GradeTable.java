@@ -0,0 +1,48 @@
+package Main;
+
+import Matching.IndexSpace;
+
+// A GradeFunction that holds the grades of every house and household of an IndexSpace, so that they can also be read
+// by index, a whole household at a time.
+public interface GradeTable extends GradeFunction {
+
+    float getByIndex(int houseIndex, int householdIndex);
+
+    // Copies the grades of the household at _householdIndex_ for all houses, by house index, into _row_.
+    void getRow(int householdIndex, float[] row);
+
+    IndexSpace getIndexSpace();
+
+    // Resolves the household once, rather than once per house.
+    default void gradeAll(int[] houseIDs, int count, int householdID, float[] row) {
+        IndexSpace indexSpace = getIndexSpace();
+        int householdIndex = indexSpace.getHouseholdIndex(householdID);
+        for (int i = 0; i < count; i++) {
+            int houseIndex = indexSpace.getHouseIndex(houseIDs[i]);
+            if (houseIndex == IndexSpace.NO_INDEX || householdIndex == IndexSpace.NO_INDEX) {
+                throw new IllegalArgumentException("No grade for house " + houseIDs[i] + " and household "
+                        + householdID + ".");
+            }
+            row[i] = getByIndex(houseIndex, householdIndex);
+        }
+    }
+
+    // Copies the whole row at once if _houses_ is the very IndexSpace of this table, as it is for copies of the
+    // matching the table was made for that have not added or removed any vertices since.
+    default void gradeRow(IndexSpace houses, int householdID, float[] row) {
+        IndexSpace indexSpace = getIndexSpace();
+        int householdIndex = indexSpace.getHouseholdIndex(householdID);
+        if (houses == indexSpace && householdIndex != IndexSpace.NO_INDEX) {
+            getRow(householdIndex, row);
+            return;
+        }
+        for (int i = 0; i < houses.getHouseCount(); i++) {
+            int houseIndex = indexSpace.getHouseIndex(houses.getHouseID(i));
+            if (houseIndex == IndexSpace.NO_INDEX || householdIndex == IndexSpace.NO_INDEX) {
+                throw new IllegalArgumentException("No grade for house " + houses.getHouseID(i) + " and household "
+                        + householdID + ".");
+            }
+            row[i] = getByIndex(houseIndex, householdIndex);
+        }
+    }
+}
@@ -1,19 +1,275 @@
 package Main;
 
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.function.BiFunction;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+// Shared by reference by every copy of the Matching it was made for. Grades never change once built, though tables may
+// be built lazily, released, or grown.
+// Strategies may also be given as Suppliers, whose function (say, a GradeMatrix) is then only built the first time the
+// strategy is asked for, and can be dropped again with _release_ once it is no longer needed. It is rebuilt when asked
+// for again, so such Suppliers must give the same grades every time; the grades of a Grader thus never change.
+// A Grader is serialized by handle rather than by value: a Matching that is serialized and read back therefore keeps
+// the very same Grader, instead of copying its H x F tables for every strategy. Handles only resolve within the JVM
+// that created the Grader, and only while it is still reachable; see MatchingSnapshot for storing matchings across
+// processes.
+// A growable Grader is the exception to the above: it grades houses and households that are registered after creation
+// too, as Matching.addHouse and addHousehold do for every vertex they add. Grades once given still never change.
+public final class Grader implements Serializable {
+
+    private static final AtomicLong nextHandle = new AtomicLong(1);
+    private static final Map<Long, HandleReference> registry = new ConcurrentHashMap<Long, HandleReference>();
+    private static final ReferenceQueue<Grader> collectedGraders = new ReferenceQueue<Grader>();
 
-public class Grader implements Serializable {
+    // By GradingStrategy ordinal. A function is null until built if it has a Supplier, and null for good if it has not.
+    private final transient AtomicReferenceArray<GradeFunction> functions;
+    private final transient Supplier<? extends GradeFunction>[] suppliers;
+    // By GradingStrategy ordinal; null until asked for. See getPreferenceLists.
+    private final transient AtomicReferenceArray<PreferenceLists> preferenceLists;
+    private final transient long handle;
+    // Growable Graders only, else null: the vertices registered so far, in order, that growable functions are built
+    // over. IDs are unique across houses and households, so one set of them covers both.
+    private final transient ArrayList<House> registeredHouses;
+    private final transient ArrayList<Household> registeredHouseholds;
+    private final transient BitSet registeredIDs;
 
-    private HashMap<GradingStrategy, BiFunction<Integer, Integer, Float>> grader;
+    public Grader(Map<GradingStrategy, ? extends GradeFunction> stratToFunction) {
+        this(stratToFunction, Collections.<GradingStrategy, Supplier<? extends GradeFunction>>emptyMap());
+    }
+
+    // Strategies in _stratToSupplier_ are built lazily; see above.
+    public Grader(Map<GradingStrategy, ? extends GradeFunction> stratToFunction,
+                  Map<GradingStrategy, ? extends Supplier<? extends GradeFunction>> stratToSupplier) {
+        this.functions = new AtomicReferenceArray<GradeFunction>(GradingStrategy.values().length);
+        this.suppliers = newSupplierArray();
+        this.preferenceLists = new AtomicReferenceArray<PreferenceLists>(GradingStrategy.values().length);
+        for (Map.Entry<GradingStrategy, ? extends GradeFunction> entry : stratToFunction.entrySet()) {
+            functions.set(entry.getKey().ordinal(), entry.getValue());
+        }
+        for (Map.Entry<GradingStrategy, ? extends Supplier<? extends GradeFunction>> entry : stratToSupplier.entrySet()) {
+            suppliers[entry.getKey().ordinal()] = entry.getValue();
+        }
+        this.registeredHouses = null;
+        this.registeredHouseholds = null;
+        this.registeredIDs = null;
+        this.handle = nextHandle.getAndIncrement();
+        register(this);
+    }
 
-    public Grader(HashMap<GradingStrategy, BiFunction<Integer, Integer, Float>> stratToFunction) {
-        this.grader = stratToFunction;
+    // A growable Grader over _houses_ and _households_, and whatever is registered later. Each strategy is kept in a
+    // GrowableGradeMatrix that is built from its source the first time it is asked for, and can be released as usual.
+    public Grader(Map<GradingStrategy, ? extends GrowableGradeMatrix.GradeSource> stratToSource,
+                  List<House> houses, List<Household> households) {
+        this.functions = new AtomicReferenceArray<GradeFunction>(GradingStrategy.values().length);
+        this.suppliers = newSupplierArray();
+        this.preferenceLists = new AtomicReferenceArray<PreferenceLists>(GradingStrategy.values().length);
+        this.registeredHouses = new ArrayList<House>(houses.size());
+        this.registeredHouseholds = new ArrayList<Household>(households.size());
+        this.registeredIDs = new BitSet();
+        for (House house : houses) {
+            registerHouse(house);
+        }
+        for (Household household : households) {
+            registerHousehold(household);
+        }
+        for (Map.Entry<GradingStrategy, ? extends GrowableGradeMatrix.GradeSource> entry : stratToSource.entrySet()) {
+            GrowableGradeMatrix.GradeSource source = entry.getValue();
+            // Called by build, which holds the lock that registering takes too.
+            suppliers[entry.getKey().ordinal()] =
+                    () -> new GrowableGradeMatrix(source, registeredHouses, registeredHouseholds);
+        }
+        this.handle = nextHandle.getAndIncrement();
+        register(this);
     }
 
     // _id1_ is houseID, _id2_ is householdID.
+    // Fine for the odd grade; loops over many pairs should resolve a GradeFunction once through forStrategy instead.
     public float apply(int id1, int id2, GradingStrategy gradingStrategy) {
-        return this.grader.get(gradingStrategy).apply(id1, id2);
+        return forStrategy(gradingStrategy).grade(id1, id2);
+    }
+
+    // Builds the function first if it is supplied lazily and not built yet, or has been released.
+    public GradeFunction forStrategy(GradingStrategy gradingStrategy) {
+        GradeFunction function = functions.get(gradingStrategy.ordinal());
+        if (function == null) {
+            function = build(gradingStrategy);
+        }
+        return function;
+    }
+
+    // Drops the function of a lazily supplied strategy, so that its memory can be reclaimed once no algorithm holds
+    // on to it any more. Functions of strategies that were given as functions cannot be rebuilt, and are kept.
+    // The strategy's PreferenceLists are dropped either way.
+    public void release(GradingStrategy gradingStrategy) {
+        if (suppliers[gradingStrategy.ordinal()] != null) {
+            functions.set(gradingStrategy.ordinal(), null);
+        }
+        preferenceLists.set(gradingStrategy.ordinal(), null);
+    }
+
+    public boolean isGrowable() {
+        return registeredIDs != null;
+    }
+
+    // Grows every built function of a growable Grader by a column for _house_, and has functions built later include
+    // it: O(F) per built strategy. Does nothing if the house is registered already, or if this Grader is not growable.
+    public void registerHouse(House house) {
+        if (registeredIDs == null) {
+            return;
+        }
+        synchronized (this) {
+            if (registeredIDs.get(house.getID())) {
+                return;
+            }
+            registeredIDs.set(house.getID());
+            registeredHouses.add(house);
+            for (int i = 0; i < functions.length(); i++) {
+                GradeFunction function = functions.get(i);
+                if (function instanceof GrowableGradeMatrix) {
+                    ((GrowableGradeMatrix) function).addHouse(house);
+                }
+            }
+        }
+    }
+
+    // As registerHouse, growing the functions by a row for _household_: O(H) per built strategy.
+    public void registerHousehold(Household household) {
+        if (registeredIDs == null) {
+            return;
+        }
+        synchronized (this) {
+            if (registeredIDs.get(household.getID())) {
+                return;
+            }
+            registeredIDs.set(household.getID());
+            registeredHouseholds.add(household);
+            for (int i = 0; i < functions.length(); i++) {
+                GradeFunction function = functions.get(i);
+                if (function instanceof GrowableGradeMatrix) {
+                    ((GrowableGradeMatrix) function).addHousehold(household);
+                }
+            }
+        }
+    }
+
+    public void releaseAll() {
+        for (GradingStrategy gradingStrategy : GradingStrategy.values()) {
+            release(gradingStrategy);
+        }
+    }
+
+    // Whether forStrategy would return right away, without building anything.
+    public boolean isBuilt(GradingStrategy gradingStrategy) {
+        return functions.get(gradingStrategy.ordinal()) != null;
+    }
+
+    // Returns null if the strategy is not backed by a GradeTable, such as a GradeMatrix or a QuantizedGradeMatrix.
+    public GradeTable getGradeTable(GradingStrategy gradingStrategy) {
+        GradeFunction function = forStrategy(gradingStrategy);
+        return function instanceof GradeTable ? (GradeTable) function : null;
+    }
+
+    // The households' houses sorted by grade under the strategy, built the first time they are asked for. Only for
+    // strategies backed by a GradeMatrix: lists take an int per pair, which is as much as such a matrix, but sixteen
+    // times a QuantizedGradeMatrix and far more than a ColumnarMatchingEvaluator. Returns null otherwise, and for
+    // growable Graders, whose lists would have to be sorted again after every arrival, and for mapped matrices too
+    // large for the lists to fit in one int[]; algorithms then grade houses one by one, or a row at a time, as before.
+    public PreferenceLists getPreferenceLists(GradingStrategy gradingStrategy) {
+        if (registeredIDs != null) {
+            return null;
+        }
+        PreferenceLists lists = preferenceLists.get(gradingStrategy.ordinal());
+        if (lists == null) {
+            lists = buildPreferenceLists(gradingStrategy);
+        }
+        return lists;
+    }
+
+    private synchronized PreferenceLists buildPreferenceLists(GradingStrategy gradingStrategy) {
+        PreferenceLists lists = preferenceLists.get(gradingStrategy.ordinal());
+        if (lists == null) {
+            GradeFunction function = forStrategy(gradingStrategy);
+            if (function instanceof GradeMatrix && ((GradeMatrix) function).size() <= GradeMatrix.MAX_ARRAY_GRADES) {
+                lists = new PreferenceLists((GradeMatrix) function);
+                preferenceLists.set(gradingStrategy.ordinal(), lists);
+            }
+        }
+        return lists;
+    }
+
+    // Synchronized, so that concurrent first requests build a table once rather than once per thread.
+    private synchronized GradeFunction build(GradingStrategy gradingStrategy) {
+        int i = gradingStrategy.ordinal();
+        GradeFunction function = functions.get(i);
+        if (function != null) {
+            return function;
+        }
+        if (suppliers[i] == null) {
+            throw new IllegalArgumentException("Grader has no grades for " + gradingStrategy + ".");
+        }
+        function = suppliers[i].get();
+        functions.set(i, function);
+        return function;
+    }
+
+    // Arrays of generic types cannot be created directly.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Supplier<? extends GradeFunction>[] newSupplierArray() {
+        return (Supplier<? extends GradeFunction>[]) new Supplier[GradingStrategy.values().length];
+    }
+
+    private Object writeReplace() {
+        return new SerializedGrader(handle);
+    }
+
+    private static void register(Grader grader) {
+        // Drop the entries of Graders that have been garbage collected in the meantime.
+        HandleReference collected = (HandleReference) collectedGraders.poll();
+        while (collected != null) {
+            registry.remove(collected.handle);
+            collected = (HandleReference) collectedGraders.poll();
+        }
+        registry.put(grader.handle, new HandleReference(grader));
+    }
+
+    private static final class HandleReference extends WeakReference<Grader> {
+        private final long handle;
+
+        private HandleReference(Grader grader) {
+            super(grader, collectedGraders);
+            this.handle = grader.handle;
+        }
+    }
+
+    // What a Grader is written as; resolves back to the original Grader when read.
+    private static final class SerializedGrader implements Serializable {
+        private final long handle;
+
+        private SerializedGrader(long handle) {
+            this.handle = handle;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            HandleReference reference = registry.get(handle);
+            Grader grader = reference == null ? null : reference.get();
+            if (grader == null) {
+                throw new InvalidObjectException("Grader " + handle + " is not available in this JVM.");
+            }
+            return grader;
+        }
     }
 }
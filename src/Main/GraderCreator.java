@@ -1,125 +1,308 @@
 package Main;
 
 import HousingMarket.House.House;
-import HousingMarket.HouseAndHouseholdIDPair;
 import HousingMarket.Household.Household;
-import Matching.MatchingEvaluator;
+import Matching.IndexSpace;
+import Matching.ColumnarMatchingEvaluator;
 import Matching.Matching;
-import org.apache.commons.collections4.iterators.ArrayIterator;
-import org.apache.commons.math3.distribution.NormalDistribution;
 
-import java.io.Serializable;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Objects;
 import java.util.Random;
-import java.util.function.BiFunction;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public class GraderCreator {
 
+    // Running with -Dgrader.lazy=true makes createGrader grade on demand; see createLazyGrader.
+    // -Dgrader.seed fixes the seed that grades are drawn with, which is otherwise random.
+    public static final String LAZY_PROPERTY = "grader.lazy";
+    public static final String SEED_PROPERTY = "grader.seed";
+    // Running with -Dgrader.store=<directory> makes table graders keep their matrices in a GradeMatrixStore there.
+    // Only used along with a fixed seed, since stored matrices are only found again for the same seed; with a random
+    // one, every run would add matrices to the store that no later run could look up.
+    public static final String STORE_PROPERTY = "grader.store";
+    // Running with -Dgrader.growable=true makes createGrader grade arrivals as they come; see createGrowableGrader.
+    public static final String GROWABLE_PROPERTY = "grader.growable";
+    // Households per independently sampled block of a GradeMatrix; see sampleMatrix.
+    private static final int ROW_BLOCK_SIZE = 64;
+    // The only grades the constrained strategies give.
+    private static final float[] THIRDS = {0f, 1/3f, 2/3f, 1f};
+
     public GraderCreator() {
     }
 
     public Grader createGrader(Matching matching) {
-        HashMap<GradingStrategy, BiFunction<Integer, Integer, Float>> stratToFunction = new HashMap<>();
-        double mean = 0.5;
+        Long seed = Long.getLong(SEED_PROPERTY);
+        long graderSeed = seed != null ? seed : new Random().nextLong();
+        if (Boolean.getBoolean(LAZY_PROPERTY)) {
+            return createLazyGrader(matching, graderSeed);
+        }
+        if (Boolean.getBoolean(GROWABLE_PROPERTY)) {
+            return createGrowableGrader(matching, graderSeed);
+        }
+        String storeDirectory = System.getProperty(STORE_PROPERTY);
+        GradeMatrixStore store = null;
+        if (storeDirectory != null) {
+            if (seed == null) {
+                System.err.println("-D" + STORE_PROPERTY + " is ignored without -D" + SEED_PROPERTY
+                        + "; matrices stored under a random seed would never be found again.");
+            } else {
+                store = new GradeMatrixStore(Paths.get(storeDirectory));
+            }
+        }
+        return createTableGrader(matching, graderSeed, store);
+    }
 
-        NormalDistribution normalDistributionLow = new NormalDistribution(mean, 1/18f);
-        double[] samplesNormalLow = normalDistributionLow.sample(matching.getHouses().size() * matching.getHouseholds().size());
+    // Keeps the grades of every random strategy in a GradeMatrix: H x F floats per strategy. The constrained strategies
+    // give no grades but multiples of 1/3, and are kept in a QuantizedGradeMatrix instead, at a quarter of a byte per
+    // pair. The evaluators need no matrix, as a ColumnarMatchingEvaluator grades about as fast as a lookup. A matrix is
+    // only sampled once its strategy is first asked for, and may be released after; see Grader. Each distribution
+    // draws from a seed of its own, so a released matrix is sampled again exactly as before, and a constrained strategy
+    // rounds the very samples of its unconstrained counterpart.
+    // The seed is combined with a fingerprint of _matching_, so that different instances drawn with the same seed do
+    // not get the same grades for the same IDs.
+    public Grader createTableGrader(Matching matching, long seed) {
+        return createTableGrader(matching, seed, null);
+    }
 
-        NormalDistribution normalDistributionHigh = new NormalDistribution(mean, 1/6f);
-        double[] samplesNormalHigh = normalDistributionHigh.sample(matching.getHouses().size() * matching.getHouseholds().size());
+    // As above, but if _store_ is not null, float matrices are mapped from it when present, and otherwise sampled
+    // straight into it, so that they need not fit on the heap. Quantized matrices are a sixteenth of the size and are
+    // always sampled in memory.
+    public Grader createTableGrader(Matching matching, long seed, GradeMatrixStore store) {
+        long fingerprint = fingerprint(matching);
+        long instanceSeed = HashedGradeFunction.mix(seed ^ fingerprint);
+        String reference = GradeMatrixStore.reference(fingerprint, seed);
+        HashMap<GradingStrategy, Supplier<? extends GradeTable>> stratToSupplier = new HashMap<>();
 
-        double[] samplesExpLow = createExponentialSamples(matching.getHouses().size() * matching.getHouseholds().size(), 1);
-        double[] samplesExpHigh = createExponentialSamples(matching.getHouses().size() * matching.getHouseholds().size(), 5);
+        // An IndexSpace never changes, so the matrices keep to the houses and households _matching_ has now, even
+        // though the Grader is shared by all copies of _matching_ and some of them will add and remove vertices.
+        IndexSpace indexSpace = matching.getIndexSpace();
+        ColumnarMatchingEvaluator evaluator = new ColumnarMatchingEvaluator(matching);
+        HashMap<GradingStrategy, GradeFunction> stratToFunction = new HashMap<>();
 
         for (GradingStrategy gradingStrategy : GradingStrategy.values()) {
-            BiFunction<Integer, Integer, Float> func = null;
-
-            switch (gradingStrategy) {
-                case MatchingEvaluatorAVG:
-                case MatchingEvaluatorMIN:
-                    MatchingEvaluator matchingEvaluator = new MatchingEvaluator(matching, gradingStrategy);
-                    func = (BiFunction<Integer, Integer, Float> & Serializable)
-                            (Integer id1, Integer id2) -> {
-                                float result = 0;
-                                try {
-                                    result = matchingEvaluator.evaluateIndividualTotalFit(id1, id2);
-                                } catch (MatchingEvaluator.HouseholdIncomeTooHighException e) {
-                                    e.printStackTrace();
-                                }
-                                return result;
-                            };
-                    break;
-                case Random:
-                    HashMap<HouseAndHouseholdIDPair, Float> randomMap = new HashMap();
-                    for (House house : matching.getHouses()) {
-                        for (Household household : matching.getHouseholds()) {
-                            float rand = new Random().nextFloat();
-                            randomMap.put(new HouseAndHouseholdIDPair(house.getID(), household.getID()), rand);
-                        }
-                    }
-                    func = (BiFunction<Integer, Integer, Float> & Serializable)
-                            (Integer id1, Integer id2) -> randomMap.get(new HouseAndHouseholdIDPair(id1, id2));
-                    break;
-                case NormalDistLowVar:
-                    func = samplesToFunc(matching, samplesNormalLow,false);
-                    break;
-                case NormalDistLowVarConstrained:
-                    func = samplesToFunc(matching, samplesNormalLow,true);
-                    break;
-                case NormalDistHighVar:
-                    func = samplesToFunc(matching, samplesNormalHigh, false);
-                    break;
-                case NormalDistHighVarConstrained:
-                    func = samplesToFunc(matching, samplesNormalHigh,true);
-                    break;
-                case ExpDistLowLambda:
-                    func = samplesToFunc(matching, samplesExpLow, false);
-                    break;
-                case ExpDistLowLambdaConstrained:
-                    func = samplesToFunc(matching, samplesExpLow, true);
-                    break;
-                case ExpDistHighLambdaConstrained:
-                    func = samplesToFunc(matching, samplesExpHigh, false);
-                    break;
-                case ExpDistHighLambda:
-                    func = samplesToFunc(matching, samplesExpHigh, true);
-                    break;
+            GradeDistribution distribution = distributionOf(gradingStrategy);
+            if (distribution == null) {
+                stratToFunction.put(gradingStrategy, evaluator.asGradeTable(gradingStrategy));
+            } else if (isConstrained(gradingStrategy)) {
+                long distributionSeed = distributionSeed(instanceSeed, distribution);
+                stratToSupplier.put(gradingStrategy,
+                        () -> sampleQuantizedMatrix(indexSpace, distribution, distributionSeed));
+            } else {
+                long distributionSeed = distributionSeed(instanceSeed, distribution);
+                if (store == null) {
+                    stratToSupplier.put(gradingStrategy,
+                            () -> sampleMatrix(indexSpace, distribution, distributionSeed));
+                } else {
+                    stratToSupplier.put(gradingStrategy, () -> store.loadOrCreate(reference, gradingStrategy,
+                            indexSpace, sink -> sampleRows(indexSpace, distribution, distributionSeed, sink)));
+                }
+            }
+        }
+        return new Grader(stratToFunction, stratToSupplier);
+    }
+
+    // Samples nothing: grades of the random strategies are computed on demand by HashedGradeFunctions, so the Grader
+    // takes no more memory than the evaluators need. As in createTableGrader, the seed is combined with a fingerprint
+    // of _matching_, and the same seed and instance always give the same grades.
+    public Grader createLazyGrader(Matching matching, long seed) {
+        long instanceSeed = HashedGradeFunction.mix(seed ^ fingerprint(matching));
+        HashMap<GradingStrategy, GradeFunction> stratToFunction = new HashMap<>();
+        ColumnarMatchingEvaluator evaluator = new ColumnarMatchingEvaluator(matching);
+        for (GradingStrategy gradingStrategy : GradingStrategy.values()) {
+            GradeDistribution distribution = distributionOf(gradingStrategy);
+            if (distribution == null) {
+                stratToFunction.put(gradingStrategy, evaluator.asGradeTable(gradingStrategy));
+            } else {
+                stratToFunction.put(gradingStrategy,
+                        new HashedGradeFunction(instanceSeed, distribution, isConstrained(gradingStrategy)));
             }
-            stratToFunction.put(gradingStrategy, func);
         }
         return new Grader(stratToFunction);
     }
 
-    private BiFunction<Integer, Integer, Float> samplesToFunc(Matching matching, double[] samples, boolean constrain) {
-        ArrayIterator<Double> samplesIterator; samplesIterator = new ArrayIterator(samples);
-        HashMap<HouseAndHouseholdIDPair, Float> valuesMap = new HashMap();
+    // Grades the houses and households _matching_ has now, and every one that is added to a Matching with this Grader
+    // later on, without having to know them in advance; see Grader.registerHouse. Only the new row or column of each
+    // built strategy is graded per arrival. Grades are those of createLazyGrader, just stored as they are made: the
+    // random strategies hash the IDs of each pair, and the evaluators read the attributes, so a pair gets the same
+    // grade whenever it arrives.
+    public Grader createGrowableGrader(Matching matching, long seed) {
+        long instanceSeed = HashedGradeFunction.mix(seed ^ fingerprint(matching));
+        HashMap<GradingStrategy, GrowableGradeMatrix.GradeSource> stratToSource = new HashMap<>();
+        for (GradingStrategy gradingStrategy : GradingStrategy.values()) {
+            GradeDistribution distribution = distributionOf(gradingStrategy);
+            if (distribution == null) {
+                boolean min = gradingStrategy == GradingStrategy.MatchingEvaluatorMIN;
+                stratToSource.put(gradingStrategy, (house, household) ->
+                        ColumnarMatchingEvaluator.evaluateIndividualTotalFit(house, household, min));
+            } else {
+                HashedGradeFunction function =
+                        new HashedGradeFunction(instanceSeed, distribution, isConstrained(gradingStrategy));
+                stratToSource.put(gradingStrategy, (house, household) -> function.grade(house.getID(), household.getID()));
+            }
+        }
+        return new Grader(stratToSource, matching.getHouses(), matching.getHouseholds());
+    }
+
+    // The distribution a strategy draws its grades from, or null for the evaluator strategies.
+    public static GradeDistribution distributionOf(GradingStrategy gradingStrategy) {
+        switch (gradingStrategy) {
+            case NormalDistLowVar:
+            case NormalDistLowVarConstrained:
+                return GradeDistribution.NORMAL_LOW_VAR;
+            case NormalDistHighVar:
+            case NormalDistHighVarConstrained:
+                return GradeDistribution.NORMAL_HIGH_VAR;
+            case ExpDistLowLambda:
+            case ExpDistLowLambdaConstrained:
+                return GradeDistribution.EXP_LOW_LAMBDA;
+            case ExpDistHighLambda:
+            case ExpDistHighLambdaConstrained:
+                return GradeDistribution.EXP_HIGH_LAMBDA;
+            case Random:
+                return GradeDistribution.UNIFORM;
+            default:
+                return null;
+        }
+    }
+
+    // Whether a strategy rounds its grades to multiples of 1/3. Note that, as it always has been, ExpDistHighLambda is
+    // the rounded one of the two high lambda strategies.
+    public static boolean isConstrained(GradingStrategy gradingStrategy) {
+        switch (gradingStrategy) {
+            case NormalDistLowVarConstrained:
+            case NormalDistHighVarConstrained:
+            case ExpDistLowLambdaConstrained:
+            case ExpDistHighLambda:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static long distributionSeed(long instanceSeed, GradeDistribution distribution) {
+        return HashedGradeFunction.mix(instanceSeed + 0x9E3779B97F4A7C15L * (distribution.ordinal() + 1));
+    }
+
+    // 64-bit hash of the IDs and attributes of all houses and households of _matching_, in order.
+    public static long fingerprint(Matching matching) {
+        long hash = matching.getHouses().size() * 31L + matching.getHouseholds().size();
         for (House house : matching.getHouses()) {
-            for (Household household : matching.getHouseholds()) {
-                double val = samplesIterator.next(); // Exists by definition.
-                if (constrain) {
-                    val = Math.round(val * 3)/3f;
-                }
-                // These two cases should happen very rarely in both gradingStrategies.
-                if (val < 0) {
-                    val = 0;
-                } else if (val > 1) {
-                    val = 1;
+            hash = HashedGradeFunction.mix(hash + house.getID());
+            hash = HashedGradeFunction.mix(hash + Objects.hashCode(house.getMunicipality()));
+            hash = HashedGradeFunction.mix(hash + Objects.hashCode(house.getLabel()));
+            hash = HashedGradeFunction.mix(hash + house.getMonthlyRent());
+            hash = HashedGradeFunction.mix(hash + house.getRoomCount());
+            hash = HashedGradeFunction.mix(hash + (house.getAccessibility() ? 1 : 0));
+        }
+        for (Household household : matching.getHouseholds()) {
+            hash = HashedGradeFunction.mix(hash + household.getID());
+            hash = HashedGradeFunction.mix(hash + Objects.hashCode(household.getMunicipality()));
+            hash = HashedGradeFunction.mix(hash + Objects.hashCode(household.getPostalCode()));
+            hash = HashedGradeFunction.mix(hash + Objects.hashCode(household.getLabel()));
+            hash = HashedGradeFunction.mix(hash + household.getIncome());
+            hash = HashedGradeFunction.mix(hash + household.getAge());
+            hash = HashedGradeFunction.mix(hash + household.getHouseholdType().ordinal());
+            hash = HashedGradeFunction.mix(hash + household.getTotalHouseholdCount());
+            hash = HashedGradeFunction.mix(hash + (household.getPriority() ? 1 : 0));
+        }
+        return hash;
+    }
+
+    // Samples the matrix into one float[] on the heap. See sampleRows.
+    GradeMatrix sampleMatrix(IndexSpace indexSpace, GradeDistribution distribution, long seed) {
+        return GradeMatrix.fromRows(indexSpace, sink -> sampleRows(indexSpace, distribution, seed, sink));
+    }
+
+    // Samples the rows (households) of the matrix in blocks of ROW_BLOCK_SIZE, in parallel, and hands each row to
+    // _sink_ as soon as it is done, so that no more than a row per thread need be held. Each block draws from a stream
+    // of its own, split off _seed_ in block order before any sampling starts, so the grades depend on the seed alone
+    // and not on the number of threads. Changing ROW_BLOCK_SIZE does change them.
+    void sampleRows(IndexSpace indexSpace, GradeDistribution distribution, long seed, GradeMatrix.RowSink sink) {
+        int houseCount = indexSpace.getHouseCount();
+        int householdCount = indexSpace.getHouseholdCount();
+        double parameter = distribution.getParameter();
+        double expScale = 1 - Math.exp(-parameter);
+        SplittableRandom[] streams = blockStreams(seed, householdCount);
+        IntStream.range(0, streams.length).parallel().forEach(block -> {
+            SplittableRandom random = streams[block];
+            float[] row = new float[houseCount];
+            int to = Math.min((block + 1) * ROW_BLOCK_SIZE, householdCount);
+            for (int householdIndex = block * ROW_BLOCK_SIZE; householdIndex < to; householdIndex++) {
+                for (int houseIndex = 0; houseIndex < houseCount; houseIndex++) {
+                    row[houseIndex] = toGrade(sample(distribution, random, parameter, expScale), false);
                 }
-                valuesMap.put(new HouseAndHouseholdIDPair(house.getID(), household.getID()), (float) val);
+                sink.put(householdIndex, row);
             }
+        });
+    }
+
+    // As sampleMatrix, drawing the very same samples, but rounded to multiples of 1/3 and quantized. Blocks span a
+    // multiple of four grades, so no two of them share a byte of the matrix.
+    QuantizedGradeMatrix sampleQuantizedMatrix(IndexSpace indexSpace, GradeDistribution distribution, long seed) {
+        int houseCount = indexSpace.getHouseCount();
+        int householdCount = indexSpace.getHouseholdCount();
+        QuantizedGradeMatrix matrix = new QuantizedGradeMatrix(indexSpace, THIRDS);
+        double parameter = distribution.getParameter();
+        double expScale = 1 - Math.exp(-parameter);
+        SplittableRandom[] streams = blockStreams(seed, householdCount);
+        IntStream.range(0, streams.length).parallel().forEach(block -> {
+            SplittableRandom random = streams[block];
+            int to = Math.min((block + 1) * ROW_BLOCK_SIZE, householdCount) * houseCount;
+            for (int i = block * ROW_BLOCK_SIZE * houseCount; i < to; i++) {
+                matrix.set(i, matrix.encode(toGrade(sample(distribution, random, parameter, expScale), true)));
+            }
+        });
+        return matrix;
+    }
+
+    // One stream per block of ROW_BLOCK_SIZE households, split off _seed_ in block order.
+    private static SplittableRandom[] blockStreams(long seed, int householdCount) {
+        int blockCount = (householdCount + ROW_BLOCK_SIZE - 1) / ROW_BLOCK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            streams[block] = root.split();
         }
-        return (BiFunction<Integer, Integer, Float> & Serializable)
-                (Integer id1, Integer id2) -> valuesMap.get(new HouseAndHouseholdIDPair(id1, id2));
+        return streams;
     }
 
+    private static double sample(GradeDistribution distribution, SplittableRandom random, double parameter,
+                                 double expScale) {
+        switch (distribution) {
+            case NORMAL_LOW_VAR:
+            case NORMAL_HIGH_VAR:
+                // Box-Muller; 1 - nextDouble lies in (0, 1], so that its log is finite.
+                return GradeDistribution.NORMAL_MEAN + parameter * Math.sqrt(-2 * Math.log(1 - random.nextDouble()))
+                        * Math.cos(2 * Math.PI * random.nextDouble());
+            case EXP_LOW_LAMBDA:
+            case EXP_HIGH_LAMBDA:
+                // Exponential formula with lower limit of 0, upper limit of 1.
+                return - Math.log(1 - expScale * nextFloat(random)) / parameter;
+            default:
+                return nextFloat(random);
+        }
+    }
+    // As Random.nextFloat, which SplittableRandom lacks.
+    private static float nextFloat(SplittableRandom random) {
+        return (random.nextInt() >>> 8) * 0x1.0p-24f;
+    }
 
-    private double[] createExponentialSamples(int count, double lambda) {
-        double[] results = new double[count];
-        for (int i = 0; i < count; i++) {
-            // Exponential formula with lower limit of 0, upper limit of 1.
-            results[i] = (- Math.log(1 - (1 - Math.exp(-lambda)) * new Random().nextFloat()) / lambda);
+    // Rounds a sample to a multiple of 1/3 if _constrain_, and clamps it to [0, 1].
+    static float toGrade(double val, boolean constrain) {
+        if (constrain) {
+            val = Math.round(val * 3)/3f;
+        }
+        // These two cases should happen very rarely in both gradingStrategies.
+        if (val < 0) {
+            val = 0;
+        } else if (val > 1) {
+            val = 1;
         }
-        return results;
+        return (float) val;
     }
 }
 
@@ -0,0 +1,117 @@
+package Main;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import HousingMarket.Household.HouseholdType;
+import HousingMarket.HousingMarket;
+import Matching.IndexSpace;
+import Matching.Matching;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that sampled matrices depend on the seed alone: not on how many threads sample them, nor on whether they are
+// sampled on the heap or into a GradeMatrixStore.
+public class GraderCreatorTest {
+
+    private static final long SEED = 42;
+    // Enough households for several blocks of GraderCreator.ROW_BLOCK_SIZE each, and a partial one at the end.
+    private static final int HOUSEHOLD_COUNT = 700;
+    private static final int HOUSE_COUNT = 90;
+    private static final int[] PARALLELISMS = {1, 3, 8};
+
+    @Test
+    public void matrixDoesNotDependOnParallelism() throws Exception {
+        IndexSpace indexSpace = createIndexSpace();
+        GraderCreator graderCreator = new GraderCreator();
+        for (GradeDistribution distribution : GradeDistribution.values()) {
+            float[] expected = null;
+            for (int parallelism : PARALLELISMS) {
+                float[] grades = gradesOf(inPool(parallelism,
+                        () -> graderCreator.sampleMatrix(indexSpace, distribution, SEED)));
+                if (expected == null) {
+                    expected = grades;
+                } else {
+                    assertArrayEquals(expected, grades, distribution + " at parallelism " + parallelism);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void quantizedMatrixDoesNotDependOnParallelism() throws Exception {
+        IndexSpace indexSpace = createIndexSpace();
+        GraderCreator graderCreator = new GraderCreator();
+        for (GradeDistribution distribution : GradeDistribution.values()) {
+            float[] expected = null;
+            for (int parallelism : PARALLELISMS) {
+                float[] grades = gradesOf(inPool(parallelism,
+                        () -> graderCreator.sampleQuantizedMatrix(indexSpace, distribution, SEED)));
+                if (expected == null) {
+                    expected = grades;
+                } else {
+                    assertArrayEquals(expected, grades, distribution + " at parallelism " + parallelism);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void storedMatrixEqualsSampledMatrix() throws Exception {
+        IndexSpace indexSpace = createIndexSpace();
+        GraderCreator graderCreator = new GraderCreator();
+        Path directory = Files.createTempDirectory("grades");
+        GradeMatrixStore store = new GradeMatrixStore(directory);
+        try {
+            for (int parallelism : PARALLELISMS) {
+                GradeMatrix stored = inPool(parallelism, () -> store.create("reference", GradingStrategy.Random,
+                        indexSpace, sink -> graderCreator.sampleRows(indexSpace, GradeDistribution.UNIFORM, SEED, sink)));
+                assertTrue(stored.isMapped());
+                assertArrayEquals(gradesOf(graderCreator.sampleMatrix(indexSpace, GradeDistribution.UNIFORM, SEED)),
+                        gradesOf(stored), "Stored at parallelism " + parallelism);
+            }
+        } finally {
+            Files.deleteIfExists(store.pathOf("reference", GradingStrategy.Random));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static IndexSpace createIndexSpace() throws Exception {
+        Matching matching = new Matching(new HousingMarket(2017, 100));
+        for (int i = 0; i < HOUSE_COUNT; i++) {
+            matching.addHouse(new House("Utrecht", "label", 500, 2, false));
+        }
+        for (int i = 0; i < HOUSEHOLD_COUNT; i++) {
+            matching.addHousehold(new Household("Utrecht", "3500AA", "label", 20000, 40, HouseholdType.ONE, 1, false));
+        }
+        return matching.getIndexSpace();
+    }
+
+    // Runs _task_ in a pool of its own, so that the parallel streams it starts use _parallelism_ threads.
+    private static <T> T inPool(int parallelism, Callable<T> task) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(task).get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static float[] gradesOf(GradeTable table) {
+        IndexSpace indexSpace = table.getIndexSpace();
+        int houseCount = indexSpace.getHouseCount();
+        float[] grades = new float[houseCount * indexSpace.getHouseholdCount()];
+        float[] row = new float[houseCount];
+        for (int householdIndex = 0; householdIndex < indexSpace.getHouseholdCount(); householdIndex++) {
+            table.getRow(householdIndex, row);
+            System.arraycopy(row, 0, grades, householdIndex * houseCount, houseCount);
+        }
+        return grades;
+    }
+}
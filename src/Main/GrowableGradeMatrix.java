@@ -0,0 +1,148 @@
+package Main;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import Matching.IndexSpace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A GradeTable that takes on new houses and households after creation, for markets whose arrivals are not known up
+// front. Grades are kept in square tiles of TILE_SIZE x TILE_SIZE floats, household-major within a tile, so that
+// adding a house only fills in its column, and adding a household its row: O(F) or O(H) grades, plus one row or column
+// of tiles every TILE_SIZE arrivals, rather than a new H x F matrix.
+// Indices are given in order of arrival, so grades that were there before never move. Adding and reading must not
+// happen at the same time from different threads; see Grader.registerHouse.
+public final class GrowableGradeMatrix implements GradeTable {
+
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    // Where the grades of new pairs come from. Must give the same grade for the same pair every time, like Grader
+    // Suppliers, since a released matrix is built again from scratch.
+    public interface GradeSource {
+        float grade(House house, Household household);
+    }
+
+    private final GradeSource source;
+    private final ArrayList<House> houses = new ArrayList<House>();
+    private final ArrayList<Household> households = new ArrayList<Household>();
+    // By ID; IndexSpace.NO_INDEX for IDs that are not houses, or households, of this matrix. Grown as needed.
+    private int[] houseIndexOfID = new int[0];
+    private int[] householdIndexOfID = new int[0];
+    // By household tile, then house tile.
+    private float[][][] tiles = new float[0][][];
+    private int houseTileCount = 0;
+    // Null after the matrix has grown, until asked for again.
+    private IndexSpace indexSpace;
+
+    public GrowableGradeMatrix(GradeSource source, List<House> houses, List<Household> households) {
+        this.source = source;
+        for (House house : houses) {
+            addHouse(house);
+        }
+        for (Household household : households) {
+            addHousehold(household);
+        }
+    }
+
+    // Grades _house_ with every household so far. Returns false, without grading anything, if it is known already.
+    public synchronized boolean addHouse(House house) {
+        if (getHouseIndex(house.getID()) != IndexSpace.NO_INDEX) {
+            return false;
+        }
+        int houseIndex = houses.size();
+        if ((houseIndex & TILE_MASK) == 0) {
+            for (int householdTile = 0; householdTile < tiles.length; householdTile++) {
+                tiles[householdTile] = Arrays.copyOf(tiles[householdTile], houseTileCount + 1);
+                tiles[householdTile][houseTileCount] = new float[TILE_SIZE * TILE_SIZE];
+            }
+            houseTileCount++;
+        }
+        houses.add(house);
+        houseIndexOfID = indexID(houseIndexOfID, house.getID(), houseIndex);
+        for (int householdIndex = 0; householdIndex < households.size(); householdIndex++) {
+            set(houseIndex, householdIndex, source.grade(house, households.get(householdIndex)));
+        }
+        indexSpace = null;
+        return true;
+    }
+
+    // Grades every house so far with _household_. Returns false, without grading anything, if it is known already.
+    public synchronized boolean addHousehold(Household household) {
+        if (getHouseholdIndex(household.getID()) != IndexSpace.NO_INDEX) {
+            return false;
+        }
+        int householdIndex = households.size();
+        if ((householdIndex & TILE_MASK) == 0) {
+            tiles = Arrays.copyOf(tiles, tiles.length + 1);
+            tiles[tiles.length - 1] = new float[houseTileCount][TILE_SIZE * TILE_SIZE];
+        }
+        households.add(household);
+        householdIndexOfID = indexID(householdIndexOfID, household.getID(), householdIndex);
+        for (int houseIndex = 0; houseIndex < houses.size(); houseIndex++) {
+            set(houseIndex, householdIndex, source.grade(houses.get(houseIndex), household));
+        }
+        indexSpace = null;
+        return true;
+    }
+
+    public float grade(int houseID, int householdID) {
+        int houseIndex = getHouseIndex(houseID);
+        int householdIndex = getHouseholdIndex(householdID);
+        if (houseIndex == IndexSpace.NO_INDEX || householdIndex == IndexSpace.NO_INDEX) {
+            throw new IllegalArgumentException("No grade for house " + houseID + " and household " + householdID + ".");
+        }
+        return getByIndex(houseIndex, householdIndex);
+    }
+
+    public float getByIndex(int houseIndex, int householdIndex) {
+        return tiles[householdIndex >>> TILE_SHIFT][houseIndex >>> TILE_SHIFT]
+                [(householdIndex & TILE_MASK) << TILE_SHIFT | (houseIndex & TILE_MASK)];
+    }
+
+    public void getRow(int householdIndex, float[] row) {
+        float[][] tileRow = tiles[householdIndex >>> TILE_SHIFT];
+        int offset = (householdIndex & TILE_MASK) << TILE_SHIFT;
+        int houseCount = houses.size();
+        for (int houseTile = 0; houseTile < houseTileCount; houseTile++) {
+            int first = houseTile << TILE_SHIFT;
+            System.arraycopy(tileRow[houseTile], offset, row, first, Math.min(TILE_SIZE, houseCount - first));
+        }
+    }
+
+    // The houses and households so far, in order of arrival; a new IndexSpace after every arrival.
+    public synchronized IndexSpace getIndexSpace() {
+        if (indexSpace == null) {
+            indexSpace = new IndexSpace(houses, households);
+        }
+        return indexSpace;
+    }
+
+    private void set(int houseIndex, int householdIndex, float grade) {
+        tiles[householdIndex >>> TILE_SHIFT][houseIndex >>> TILE_SHIFT]
+                [(householdIndex & TILE_MASK) << TILE_SHIFT | (houseIndex & TILE_MASK)] = grade;
+    }
+
+    private int getHouseIndex(int houseID) {
+        return houseID >= 0 && houseID < houseIndexOfID.length ? houseIndexOfID[houseID] : IndexSpace.NO_INDEX;
+    }
+
+    private int getHouseholdIndex(int householdID) {
+        return householdID >= 0 && householdID < householdIndexOfID.length
+                ? householdIndexOfID[householdID] : IndexSpace.NO_INDEX;
+    }
+
+    // Maps _id_ to _index_ in _indexOfID_, which is doubled in size if the ID does not fit.
+    private static int[] indexID(int[] indexOfID, int id, int index) {
+        if (id >= indexOfID.length) {
+            int oldLength = indexOfID.length;
+            indexOfID = Arrays.copyOf(indexOfID, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(indexOfID, oldLength, indexOfID.length, IndexSpace.NO_INDEX);
+        }
+        indexOfID[id] = index;
+        return indexOfID;
+    }
+}
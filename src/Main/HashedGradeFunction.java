@@ -0,0 +1,64 @@
+package Main;
+
+// Grades computed on demand rather than looked up: each grade is drawn from a counter-based generator, that is a hash
+// of the seed and the two IDs, followed by the transform into the wanted distribution. Nothing is stored per pair, so
+// a Grader made of these takes constant memory however large the market, and asking for the same pair twice gives the
+// same grade. See GraderCreator.createLazyGrader.
+public final class HashedGradeFunction implements GradeFunction {
+
+    private final long streamSeed;
+    private final GradeDistribution distribution;
+    private final boolean constrain;
+    private final double parameter; // Standard deviation or lambda, depending on _distribution_.
+    private final double expScale; // 1 - e^-lambda, for the exponential distributions.
+
+    // Functions with the same _seed_ and _distribution_ give the same grades up to _constrain_, just like the
+    // constrained strategies in createTableGrader round the very samples their unconstrained counterparts use.
+    public HashedGradeFunction(long seed, GradeDistribution distribution, boolean constrain) {
+        this.streamSeed = GraderCreator.distributionSeed(seed, distribution);
+        this.distribution = distribution;
+        this.constrain = constrain;
+        this.parameter = distribution.getParameter();
+        this.expScale = 1 - Math.exp(-parameter);
+    }
+
+    public float grade(int houseID, int householdID) {
+        // Distinct pairs give distinct counters, and both steps below are bijections, so no two pairs share their bits.
+        long counter = ((long) houseID << 32) | (householdID & 0xFFFFFFFFL);
+        long bits = mix(streamSeed + counter * 0x9E3779B97F4A7C15L);
+        double val;
+        switch (distribution) {
+            case NORMAL_LOW_VAR:
+            case NORMAL_HIGH_VAR:
+                // Box-Muller, on the two halves of _bits_; _u1_ lies in (0, 1] so that its log is finite.
+                double u1 = ((bits >>> 32) + 1) * 0x1.0p-32;
+                double u2 = (bits & 0xFFFFFFFFL) * 0x1.0p-32;
+                val = GradeDistribution.NORMAL_MEAN + parameter * Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+                break;
+            case EXP_LOW_LAMBDA:
+            case EXP_HIGH_LAMBDA:
+                // Same formula as GraderCreator.sample.
+                val = - Math.log(1 - expScale * uniformFloat(bits)) / parameter;
+                break;
+            default:
+                return uniformFloat(bits);
+        }
+        return GraderCreator.toGrade(val, constrain);
+    }
+
+    public GradeDistribution getDistribution() {
+        return distribution;
+    }
+
+    // Uniform in [0, 1), with the 24 bits of precision that Random.nextFloat has.
+    private static float uniformFloat(long bits) {
+        return (bits >>> 40) * 0x1.0p-24f;
+    }
+
+    // The SplitMix64 finalizer.
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,131 @@
+package Main;
+
+import Matching.IndexSpace;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+// Every household's houses, by house index, sorted from most to least preferred under one GradeTable; ties are in
+// descending order of house ID, since the last of the best houses wins when the vacancy sets of a Matching are
+// scanned in ascending order. Stored
+// household-major like GradeMatrix: H ints per household.
+// Queries like "the best vacant house that is better than X" then walk a household's list from the top, skipping
+// houses that do not qualify, and stop as soon as the grades drop below X, rather than grading all H houses.
+// Built by Grader.getPreferenceLists, once per Grader and strategy.
+public final class PreferenceLists {
+
+    // Households per block of rows sorted by one task; see the constructor.
+    private static final int ROW_BLOCK_SIZE = 64;
+
+    private final GradeTable table;
+    private final int houseCount;
+    private final int[] houses;
+
+    public PreferenceLists(GradeTable table) {
+        IndexSpace indexSpace = table.getIndexSpace();
+        int householdCount = indexSpace.getHouseholdCount();
+        this.table = table;
+        this.houseCount = indexSpace.getHouseCount();
+        this.houses = new int[houseCount * householdCount];
+        int blockCount = (householdCount + ROW_BLOCK_SIZE - 1) / ROW_BLOCK_SIZE;
+        IntStream.range(0, blockCount).parallel().forEach(block -> {
+            float[] row = new float[houseCount];
+            long[] keys = new long[houseCount];
+            int to = Math.min((block + 1) * ROW_BLOCK_SIZE, householdCount);
+            for (int householdIndex = block * ROW_BLOCK_SIZE; householdIndex < to; householdIndex++) {
+                table.getRow(householdIndex, row);
+                // Sorting longs of (descending grade, descending house ID) keeps the houses unboxed.
+                for (int houseIndex = 0; houseIndex < houseCount; houseIndex++) {
+                    keys[houseIndex] = ((long) ~sortableBits(row[houseIndex]) << 32)
+                            | (~indexSpace.getHouseID(houseIndex) & 0xFFFFFFFFL);
+                }
+                Arrays.sort(keys);
+                int offset = householdIndex * houseCount;
+                for (int position = 0; position < houseCount; position++) {
+                    houses[offset + position] = indexSpace.getHouseIndex(~(int) keys[position]);
+                }
+            }
+        });
+    }
+
+    public GradeTable getTable() {
+        return table;
+    }
+
+    public IndexSpace getIndexSpace() {
+        return table.getIndexSpace();
+    }
+
+    // The index of the house at _position_ in the list of the household; position 0 is its most preferred house.
+    public int getHouse(int householdIndex, int position) {
+        return houses[householdIndex * houseCount + position];
+    }
+
+    // How many houses the household grades _grade_ or more; these are the first ones in its list.
+    public int countAtLeast(int householdIndex, float grade) {
+        return countWhile(householdIndex, grade, false);
+    }
+
+    // How many houses the household grades more than _grade_; these are the first ones in its list.
+    public int countAbove(int householdIndex, float grade) {
+        return countWhile(householdIndex, grade, true);
+    }
+
+    // The most preferred house among the first _count_ in the list of the household that _candidate_ accepts, or
+    // IndexSpace.NO_INDEX if there is none.
+    public int firstAmong(int householdIndex, int count, IntPredicate candidate) {
+        int offset = householdIndex * houseCount;
+        for (int position = 0; position < count; position++) {
+            int houseIndex = houses[offset + position];
+            if (candidate.test(houseIndex)) {
+                return houseIndex;
+            }
+        }
+        return IndexSpace.NO_INDEX;
+    }
+
+    // Like firstAmong, but of the equally graded most preferred houses that _candidate_ accepts, the one that comes
+    // last in the list, i.e. the one with the lowest house ID; for scans in which the first of the best houses wins.
+    public int lastTiedAmong(int householdIndex, int count, IntPredicate candidate) {
+        int offset = householdIndex * houseCount;
+        int best = IndexSpace.NO_INDEX;
+        float bestGrade = 0;
+        for (int position = 0; position < count; position++) {
+            int houseIndex = houses[offset + position];
+            if (best != IndexSpace.NO_INDEX && table.getByIndex(houseIndex, householdIndex) != bestGrade) {
+                break;
+            }
+            if (candidate.test(houseIndex)) {
+                if (best == IndexSpace.NO_INDEX) {
+                    bestGrade = table.getByIndex(houseIndex, householdIndex);
+                }
+                best = houseIndex;
+            }
+        }
+        return best;
+    }
+
+    // Binary search for the first position whose grade is below _grade_ (or not above it, if _strict_).
+    private int countWhile(int householdIndex, float grade, boolean strict) {
+        int offset = householdIndex * houseCount;
+        int low = 0;
+        int high = houseCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            float middleGrade = table.getByIndex(houses[offset + middle], householdIndex);
+            if (strict ? middleGrade > grade : middleGrade >= grade) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Bits of _grade_ as an int that orders like the grade itself; -0 and 0 are the same.
+    private static int sortableBits(float grade) {
+        int bits = Float.floatToIntBits(grade + 0f);
+        return bits >= 0 ? bits : bits ^ Integer.MAX_VALUE;
+    }
+}
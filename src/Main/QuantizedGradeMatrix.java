@@ -0,0 +1,88 @@
+package Main;
+
+import Matching.IndexSpace;
+
+// The grades of a strategy that only ever gives a handful of distinct grades, such as the constrained strategies
+// (multiples of 1/3) and the evaluators ({0, 1} and {0, 1/3, 2/3, 1}). Stores a 2-bit code per pair, four to a byte,
+// and translates codes back through a table of at most four levels: a sixteenth of the memory of a GradeMatrix, so that
+// wiring loops touch far fewer cache lines. Same household-major order as GradeMatrix.
+public final class QuantizedGradeMatrix implements GradeTable {
+
+    public static final int MAX_LEVELS = 4;
+    private static final int CODE_BITS = 2;
+    private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+    private final IndexSpace indexSpace;
+    private final int houseCount;
+    private final float[] levels;
+    private final byte[] codes;
+
+    // All grades start out as _levels_[0] until set.
+    public QuantizedGradeMatrix(IndexSpace indexSpace, float[] levels) {
+        if (levels.length == 0 || levels.length > MAX_LEVELS) {
+            throw new IllegalArgumentException("Expected 1 to " + MAX_LEVELS + " levels, but got " + levels.length + ".");
+        }
+        long gradeCount = (long) indexSpace.getHouseCount() * indexSpace.getHouseholdCount();
+        if (gradeCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many grades for one matrix: " + gradeCount + ".");
+        }
+        this.indexSpace = indexSpace;
+        this.houseCount = indexSpace.getHouseCount();
+        this.levels = levels.clone();
+        this.codes = new byte[(int) ((gradeCount + 3) / 4)];
+    }
+
+    public float grade(int houseID, int householdID) {
+        int houseIndex = indexSpace.getHouseIndex(houseID);
+        int householdIndex = indexSpace.getHouseholdIndex(householdID);
+        if (houseIndex == IndexSpace.NO_INDEX || householdIndex == IndexSpace.NO_INDEX) {
+            throw new IllegalArgumentException("No grade for house " + houseID + " and household " + householdID + ".");
+        }
+        return levels[code(householdIndex * houseCount + houseIndex)];
+    }
+
+    public float getByIndex(int houseIndex, int householdIndex) {
+        return levels[code(householdIndex * houseCount + houseIndex)];
+    }
+
+    public void getRow(int householdIndex, float[] row) {
+        int offset = householdIndex * houseCount;
+        for (int houseIndex = 0; houseIndex < houseCount; houseIndex++) {
+            row[houseIndex] = levels[code(offset + houseIndex)];
+        }
+    }
+
+    public IndexSpace getIndexSpace() {
+        return indexSpace;
+    }
+
+    public float[] getLevels() {
+        return levels.clone();
+    }
+
+    // The code of _grade_, which must be one of the levels exactly.
+    public int encode(float grade) {
+        for (int code = 0; code < levels.length; code++) {
+            if (Float.compare(levels[code], grade) == 0) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("Grade " + grade + " is not one of the levels of this matrix.");
+    }
+
+    // Sets the grade at position _i_ in household-major order to the level with the given code.
+    // Writes share bytes with their neighbours, so threads filling the matrix at once must keep to ranges of positions
+    // that start and end at multiples of four.
+    void set(int i, int code) {
+        int shift = (i & 3) * CODE_BITS;
+        codes[i >>> 2] = (byte) ((codes[i >>> 2] & ~(CODE_MASK << shift)) | (code << shift));
+    }
+
+    int size() {
+        return houseCount * indexSpace.getHouseholdCount();
+    }
+
+    private int code(int i) {
+        return (codes[i >>> 2] >>> ((i & 3) * CODE_BITS)) & CODE_MASK;
+    }
+}
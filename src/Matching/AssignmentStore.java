@@ -0,0 +1,116 @@
+package Matching;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+// Array-backed replacement of MatchGraph for use within Matching.
+// Both arrays are indexed by vertex ID, which is dense since IDs are handed out by Matching in order.
+// A value of NONE means the vertex is unmatched; 0 is never a valid ID (see Matching._nextID_).
+public class AssignmentStore implements Serializable {
+
+    public static final int NONE = 0;
+
+    private int[] householdOfHouse;
+    private int[] houseOfHousehold;
+    private int edgeCount = 0;
+
+    public AssignmentStore() {
+        this(16);
+    }
+
+    public AssignmentStore(int initialCapacity) {
+        this.householdOfHouse = new int[Math.max(initialCapacity, 1)];
+        this.houseOfHousehold = new int[Math.max(initialCapacity, 1)];
+    }
+
+    public AssignmentStore(AssignmentStore other) {
+        this.householdOfHouse = other.householdOfHouse.clone();
+        this.houseOfHousehold = other.houseOfHousehold.clone();
+        this.edgeCount = other.edgeCount;
+    }
+
+    public int getHouseholdID(int houseID) {
+        if (houseID < 0 || houseID >= householdOfHouse.length) {
+            return NONE;
+        }
+        return householdOfHouse[houseID];
+    }
+
+    public int getHouseID(int householdID) {
+        if (householdID < 0 || householdID >= houseOfHousehold.length) {
+            return NONE;
+        }
+        return houseOfHousehold[householdID];
+    }
+
+    public boolean isHouseMatched(int houseID) {
+        return getHouseholdID(houseID) != NONE;
+    }
+
+    public boolean isHouseholdMatched(int householdID) {
+        return getHouseID(householdID) != NONE;
+    }
+
+    public boolean containsEdge(int houseID, int householdID) {
+        return getHouseholdID(houseID) == householdID && householdID != NONE;
+    }
+
+    // Callers are expected to have checked that both vertices are unmatched.
+    public void connect(int houseID, int householdID) {
+        ensureHouseCapacity(houseID);
+        ensureHouseholdCapacity(householdID);
+        householdOfHouse[houseID] = householdID;
+        houseOfHousehold[householdID] = houseID;
+        edgeCount++;
+    }
+
+    // Like removing an edge from a graph, this does nothing if the two vertices are not matched to each other.
+    public boolean disconnect(int houseID, int householdID) {
+        if (!containsEdge(houseID, householdID)) {
+            return false;
+        }
+        householdOfHouse[houseID] = NONE;
+        houseOfHousehold[householdID] = NONE;
+        edgeCount--;
+        return true;
+    }
+
+    // Removes whatever edge the house is part of. Returns the ID of the household it was matched to, or NONE.
+    public int disconnectHouse(int houseID) {
+        int householdID = getHouseholdID(houseID);
+        if (householdID != NONE) {
+            disconnect(houseID, householdID);
+        }
+        return householdID;
+    }
+
+    // Removes whatever edge the household is part of. Returns the ID of the house it was matched to, or NONE.
+    public int disconnectHousehold(int householdID) {
+        int houseID = getHouseID(householdID);
+        if (houseID != NONE) {
+            disconnect(houseID, householdID);
+        }
+        return houseID;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    // Length of each of the two arrays; see Matching.estimateCopyBytes.
+    public int getCapacity() {
+        return Math.max(householdOfHouse.length, houseOfHousehold.length);
+    }
+
+    private void ensureHouseCapacity(int houseID) {
+        if (houseID >= householdOfHouse.length) {
+            householdOfHouse = Arrays.copyOf(householdOfHouse, Math.max(houseID + 1, householdOfHouse.length * 2));
+        }
+    }
+
+    private void ensureHouseholdCapacity(int householdID) {
+        if (householdID >= houseOfHousehold.length) {
+            houseOfHousehold = Arrays.copyOf(houseOfHousehold, Math.max(householdID + 1, houseOfHousehold.length * 2));
+        }
+    }
+}
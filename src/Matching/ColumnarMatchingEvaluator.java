@@ -0,0 +1,246 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import Main.GradeTable;
+import Main.GradingStrategy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// MatchingEvaluator.evaluateIndividualTotalFit for all pairs of a fixed set of houses and households at once.
+// The attributes the fits depend on are read into primitive columns once, by index. Each of the three criteria then
+// only depends on a household through a handful of classes (rent limit, household size, age 65 or over), so per class
+// there is one bitset over the house indices of the houses that fit; households merely point at the bitsets of their
+// classes. A single grade is then three bit tests, and a row takes a few word-wide operations per 64 houses.
+// Bitsets take (H / 64) words per distinct class, rather than anything per pair.
+// Where evaluateIndividualTotalFit throws a HouseholdIncomeTooHighException, a household whose income is too high has
+// a fit of 0 with every house here; it is reported once, on creation.
+public class ColumnarMatchingEvaluator {
+
+    // By financial class; see financialClassOf.
+    private static final double[] RENT_LIMITS = {607.46, 651.03, 720.42};
+    private static final int INCOME_TOO_HIGH = -1;
+    // The fits can only sum to 0, 1, 2 or 3; _AVG_ is their sum over 3.
+    private static final float[] THIRDS = {0f, 1/3f, 2/3f, 1f};
+
+    private final IndexSpace indexSpace;
+    private final int houseCount;
+    private final int wordCount;
+
+    // By household index. The financial bitset is null for a household whose income is too high.
+    private final long[][] financialFits;
+    private final long[][] roomFits;
+    private final long[][] accessibilityFits;
+
+    // The vertices of _matching_ must not change while this evaluator is in use.
+    public ColumnarMatchingEvaluator(Matching matching) {
+        this.indexSpace = matching.getIndexSpace();
+        this.houseCount = indexSpace.getHouseCount();
+        this.wordCount = (houseCount + 63) >>> 6;
+        int householdCount = indexSpace.getHouseholdCount();
+
+        float[] rents = new float[houseCount];
+        int[] roomCounts = new int[houseCount];
+        boolean[] accessibilities = new boolean[houseCount];
+        for (int i = 0; i < houseCount; i++) {
+            House house = matching.getHouse(indexSpace.getHouseID(i));
+            rents[i] = house.getMonthlyRent();
+            roomCounts[i] = house.getRoomCount();
+            accessibilities[i] = house.getAccessibility();
+        }
+        int[] incomes = new int[householdCount];
+        int[] householdSizes = new int[householdCount];
+        int[] ages = new int[householdCount];
+        for (int i = 0; i < householdCount; i++) {
+            Household household = matching.getHousehold(indexSpace.getHouseholdID(i));
+            incomes[i] = household.getIncome();
+            householdSizes[i] = household.getTotalHouseholdCount();
+            ages[i] = household.getAge();
+        }
+
+        long[][] financialBitsets = new long[RENT_LIMITS.length][];
+        for (int c = 0; c < RENT_LIMITS.length; c++) {
+            financialBitsets[c] = newBitset();
+            for (int i = 0; i < houseCount; i++) {
+                if (rents[i] <= RENT_LIMITS[c]) {
+                    set(financialBitsets[c], i);
+                }
+            }
+        }
+        long[] everyHouse = newBitset();
+        long[] accessibleHouses = newBitset();
+        for (int i = 0; i < houseCount; i++) {
+            set(everyHouse, i);
+            if (accessibilities[i]) {
+                set(accessibleHouses, i);
+            }
+        }
+        Map<Integer, long[]> roomBitsets = new HashMap<Integer, long[]>();
+
+        this.financialFits = new long[householdCount][];
+        this.roomFits = new long[householdCount][];
+        this.accessibilityFits = new long[householdCount][];
+        for (int i = 0; i < householdCount; i++) {
+            int financialClass = financialClassOf(householdSizes[i], incomes[i]);
+            if (financialClass == INCOME_TOO_HIGH) {
+                System.err.println("Household " + indexSpace.getHouseholdID(i) + " has an income of " + incomes[i]
+                        + ", above the maximum of 42436; its fit is 0 with every house.");
+            } else {
+                financialFits[i] = financialBitsets[financialClass];
+            }
+            roomFits[i] = roomBitsets.computeIfAbsent(householdSizes[i], size -> roomBitset(roomCounts, size));
+            accessibilityFits[i] = ages[i] >= 65 ? accessibleHouses : everyHouse;
+        }
+    }
+
+    public IndexSpace getIndexSpace() {
+        return indexSpace;
+    }
+
+    public boolean isIncomeTooHigh(int householdIndex) {
+        return financialFits[householdIndex] == null;
+    }
+
+    // evaluateIndividualTotalFit of the strategy, which must be MatchingEvaluatorMIN or MatchingEvaluatorAVG, on the
+    // houses and households of this evaluator.
+    public GradeTable asGradeTable(GradingStrategy gradingStrategy) {
+        switch (gradingStrategy) {
+            case MatchingEvaluatorMIN:
+                return new EvaluatorTable(true);
+            case MatchingEvaluatorAVG:
+                return new EvaluatorTable(false);
+            default:
+                throw new IllegalArgumentException(gradingStrategy + " is not an evaluator strategy.");
+        }
+    }
+
+    public float evaluateIndividualTotalFit(int houseIndex, int householdIndex, boolean min) {
+        long[] financialFit = financialFits[householdIndex];
+        if (financialFit == null) {
+            return 0;
+        }
+        int word = houseIndex >>> 6;
+        long bit = 1L << houseIndex;
+        int fitCount = ((financialFit[word] & bit) != 0 ? 1 : 0) + ((roomFits[householdIndex][word] & bit) != 0 ? 1 : 0)
+                + ((accessibilityFits[householdIndex][word] & bit) != 0 ? 1 : 0);
+        if (min) {
+            return fitCount == 3 ? 1 : 0;
+        }
+        return THIRDS[fitCount];
+    }
+
+    // Fills _row_, by house index, with the total fits of the household at _householdIndex_.
+    public void evaluateRow(int householdIndex, boolean min, float[] row) {
+        long[] financialFit = financialFits[householdIndex];
+        if (financialFit == null) {
+            Arrays.fill(row, 0, houseCount, 0f);
+            return;
+        }
+        long[] roomFit = roomFits[householdIndex];
+        long[] accessibilityFit = accessibilityFits[householdIndex];
+        for (int word = 0; word < wordCount; word++) {
+            long f = financialFit[word];
+            long r = roomFit[word];
+            long a = accessibilityFit[word];
+            // Per house, the index into THIRDS as two bits, _high_ and _low_: the number of criteria it fits for AVG,
+            // and 3 if it fits all of them (else 0) for MIN.
+            long low;
+            long high;
+            if (min) {
+                low = f & r & a;
+                high = low;
+            } else {
+                low = f ^ r ^ a;
+                high = (f & r) | (a & (f ^ r));
+            }
+            int first = word << 6;
+            int last = Math.min(first + 64, houseCount);
+            for (int houseIndex = first; houseIndex < last; houseIndex++) {
+                int shift = houseIndex - first;
+                row[houseIndex] = THIRDS[(int) ((high >>> shift) & 1) << 1 | (int) ((low >>> shift) & 1)];
+            }
+        }
+    }
+
+    // The same fit for a single pair, straight from the attributes, for houses and households that arrive after the
+    // evaluator was made; see GraderCreator.createGrowableGrader. A household whose income is too high is not reported.
+    public static float evaluateIndividualTotalFit(House house, Household household, boolean min) {
+        int householdSize = household.getTotalHouseholdCount();
+        int financialClass = financialClassOf(householdSize, household.getIncome());
+        if (financialClass == INCOME_TOO_HIGH) {
+            return 0;
+        }
+        int roomCount = house.getRoomCount();
+        int fitCount = (house.getMonthlyRent() <= RENT_LIMITS[financialClass] ? 1 : 0)
+                + (roomCount <= householdSize && householdSize <= roomCount + 1 ? 1 : 0)
+                + (household.getAge() < 65 || house.getAccessibility() ? 1 : 0);
+        if (min) {
+            return fitCount == 3 ? 1 : 0;
+        }
+        return THIRDS[fitCount];
+    }
+
+    // 0 to 2 into RENT_LIMITS, or INCOME_TOO_HIGH. Below numbers are valid for 2019, as in MatchingEvaluator.
+    private static int financialClassOf(int householdSize, int income) {
+        if (income > 42436) {
+            return INCOME_TOO_HIGH;
+        }
+        if (householdSize == 1) {
+            return income <= 22700 ? 0 : 2;
+        }
+        if (householdSize == 2) {
+            return income <= 30825 ? 0 : 2;
+        }
+        return income <= 30825 ? 1 : 2;
+    }
+
+    private long[] roomBitset(int[] roomCounts, int householdSize) {
+        long[] bitset = newBitset();
+        for (int i = 0; i < houseCount; i++) {
+            if (roomCounts[i] <= householdSize && householdSize <= roomCounts[i] + 1) {
+                set(bitset, i);
+            }
+        }
+        return bitset;
+    }
+
+    private long[] newBitset() {
+        return new long[wordCount];
+    }
+
+    private static void set(long[] bitset, int i) {
+        bitset[i >>> 6] |= 1L << i;
+    }
+
+    // The Grader's view of one evaluator strategy.
+    private class EvaluatorTable implements GradeTable {
+        private final boolean min;
+
+        private EvaluatorTable(boolean min) {
+            this.min = min;
+        }
+
+        public float grade(int houseID, int householdID) {
+            int houseIndex = indexSpace.getHouseIndex(houseID);
+            int householdIndex = indexSpace.getHouseholdIndex(householdID);
+            if (houseIndex == IndexSpace.NO_INDEX || householdIndex == IndexSpace.NO_INDEX) {
+                throw new IllegalArgumentException("No grade for house " + houseID + " and household " + householdID + ".");
+            }
+            return evaluateIndividualTotalFit(houseIndex, householdIndex, min);
+        }
+
+        public float getByIndex(int houseIndex, int householdIndex) {
+            return evaluateIndividualTotalFit(houseIndex, householdIndex, min);
+        }
+
+        public void getRow(int householdIndex, float[] row) {
+            evaluateRow(householdIndex, min, row);
+        }
+
+        public IndexSpace getIndexSpace() {
+            return indexSpace;
+        }
+    }
+}
@@ -7,12 +7,14 @@ import Algorithms.WorkerOptimalStableMatchingAlgorithm.CycleFinder;
 import Algorithms.WorkerOptimalStableMatchingAlgorithm.WorkerOptimalStableMatchingAlgorithm;
 import HousingMarket.House.House;
 import HousingMarket.Household.Household;
+import Main.Grader;
 import Main.GradingStrategy;
-
-import static Miscellaneous.DeepCloner.deepClone;
+import Miscellaneous.CloneStatistics;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class DynamicMatching implements Serializable {
 
@@ -31,10 +33,19 @@ public class DynamicMatching implements Serializable {
 
     protected boolean oneSided; // false means two-sided arrival. One-sided means houses are set and households arrive.
 
+    // If true, the algorithms run on _initialMatching_ itself while it journals every change, and resetting
+    // rolls these changes back instead of copying the initial state again. See Matching.rollbackJournal.
+    private final boolean journaledReset;
+
     public DynamicMatching(Matching matching, int timestepCount, boolean oneSided) throws TooManyTimestepsException {
-        inputMatching = (Matching) deepClone(matching);
+        this(matching, timestepCount, oneSided, false);
+    }
+
+    public DynamicMatching(Matching matching, int timestepCount, boolean oneSided, boolean journaledReset) throws TooManyTimestepsException {
+        inputMatching = copy(CloneStatistics.Site.DYNAMIC_MATCHING_SETUP, matching);
         this.oneSided = oneSided;
-        this.timestepCount = (Integer) deepClone(timestepCount);
+        this.journaledReset = journaledReset;
+        this.timestepCount = timestepCount;
         initialHousesToArrive = new ArrayList<House>(this.timestepCount);
         initialHouseholdsToArrive = new ArrayList<Household>(this.timestepCount);
         if (this.timestepCount > inputMatching.getHouseholds().size()) {
@@ -43,7 +54,7 @@ public class DynamicMatching implements Serializable {
         if (!oneSided && this.timestepCount > inputMatching.getHouses().size()) {
             throw new TooManyTimestepsException("Amount of timesteps exceeds amount of houses.");
         }
-        Matching initialMatching = (Matching) deepClone(inputMatching);
+        Matching initialMatching = copy(CloneStatistics.Site.DYNAMIC_MATCHING_SETUP, inputMatching);
         for (int step = 0; step < this.timestepCount; step++) {
             Household lastHousehold = initialMatching.getHouseholds().get(initialMatching.getHouseholds().size()-1);
             initialMatching.removeHousehold(lastHousehold.getID());
@@ -58,11 +69,38 @@ public class DynamicMatching implements Serializable {
         //WorkerOptimalStableMatchingAlgorithm wosma
 //                = new WorkerOptimalStableMatchingAlgorithm(initialMatching);
         this.initialMatching = initialMatching;//wosma.findWorkerOptimalStableMatching(false,false);
-        this.currentMatching = (Matching) deepClone(initialMatching);
-        this.currentHousesToArrive = (ArrayList<House>) deepClone(initialHousesToArrive);
-        this.currentHouseholdsToArrive = (ArrayList<Household>) deepClone(initialHouseholdsToArrive);
-        this.initialTimestepsLeft = (Integer) deepClone(this.timestepCount);
-        this.currentTimestepsLeft = (Integer) deepClone(this.timestepCount);
+        this.initialTimestepsLeft = this.timestepCount;
+        startFromInitialState();
+    }
+
+    // Restores a DynamicMatching exactly as it was written by MatchingSnapshot, without splitting off arrivals again.
+    DynamicMatching(Matching inputMatching, Matching initialMatching, ArrayList<House> initialHousesToArrive,
+                    ArrayList<Household> initialHouseholdsToArrive, int timestepCount, boolean oneSided,
+                    boolean journaledReset) {
+        this.inputMatching = inputMatching;
+        this.initialMatching = initialMatching;
+        this.initialHousesToArrive = initialHousesToArrive;
+        this.initialHouseholdsToArrive = initialHouseholdsToArrive;
+        this.timestepCount = timestepCount;
+        this.initialTimestepsLeft = timestepCount;
+        this.oneSided = oneSided;
+        this.journaledReset = journaledReset;
+        startFromInitialState();
+    }
+
+    private void startFromInitialState() {
+        if (journaledReset) {
+            this.initialMatching.startJournal();
+            this.currentMatching = this.initialMatching;
+            this.currentHousesToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_SETUP, initialHousesToArrive);
+            this.currentHouseholdsToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_SETUP, initialHouseholdsToArrive);
+            this.currentTimestepsLeft = this.timestepCount;
+        } else {
+            this.currentMatching = copy(CloneStatistics.Site.DYNAMIC_MATCHING_SETUP, initialMatching);
+            this.currentHousesToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_SETUP, initialHousesToArrive);
+            this.currentHouseholdsToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_SETUP, initialHouseholdsToArrive);
+            this.currentTimestepsLeft = this.timestepCount;
+        }
     }
 
     // PerStep approach.
@@ -80,7 +118,7 @@ public class DynamicMatching implements Serializable {
             this.resetState();
             throw e;
         }
-        Matching resultingMatching = (Matching) deepClone(currentMatching);
+        Matching resultingMatching = copy(CloneStatistics.Site.DYNAMIC_MATCHING_RESULT, currentMatching);
         this.resetState();
         return resultingMatching;
     }
@@ -104,7 +142,7 @@ public class DynamicMatching implements Serializable {
             this.resetState();
             throw e;
         }
-        Matching resultingMatching = (Matching) deepClone(currentMatching);
+        Matching resultingMatching = copy(CloneStatistics.Site.DYNAMIC_MATCHING_RESULT, currentMatching);
         this.resetState();
         return resultingMatching;
     }
@@ -126,37 +164,90 @@ public class DynamicMatching implements Serializable {
     }
 
     protected void runAlgorithm(AlgorithmStrategy algorithmStrategy, GradingStrategy gradingStrategy, boolean print) throws Matching.HouseholdLinkedToMultipleException, CycleFinder.FullyExploredVertexDiscoveredException, Matching.PreferredNoHouseholdlessHouseException, Matching.HouseLinkedToMultipleException, MatchingEvaluator.HouseholdIncomeTooHighException, Matching.HouseAlreadyMatchedException, Matching.HouseholdAlreadyMatchedException, Matching.HouseLinkedToHouseException, Matching.HouseholdLinkedToHouseholdException, MCPMA.UnequalSidesException, MCPMAPrices.AlreadyInitiatedException, ResidualGraph.PathEdgeNotInResidualGraphException, ResidualGraph.MatchGraphNotEmptyException, InterruptedException {
+        Matching resultingMatching = null;
         switch (algorithmStrategy) {
             case WOSMA_REGULAR:
             case WOSMA_FINDMAX:
             case WOSMA_IRCYCLES:
                 WorkerOptimalStableMatchingAlgorithm wosma
                     = new WorkerOptimalStableMatchingAlgorithm(currentMatching);
-                currentMatching = wosma.findWorkerOptimalStableMatching(algorithmStrategy, gradingStrategy, print);
+                resultingMatching = wosma.findWorkerOptimalStableMatching(algorithmStrategy, gradingStrategy, print);
                 break;
             case IMPROVEMENT_MCPMA:
                 MCPMAOnMatchingRunner mcpmaOnMatchingRunner
                     = new MCPMAOnMatchingRunner(currentMatching, MCPMAStrategy.IMPROVEMENT, gradingStrategy);
-                currentMatching = mcpmaOnMatchingRunner.optimizeMatching(print);
+                resultingMatching = mcpmaOnMatchingRunner.optimizeMatching(print);
                 break;
             case SIMPLE:
                 Simple simple = new Simple(currentMatching, gradingStrategy);
-                currentMatching = simple.run();
+                resultingMatching = simple.run();
                 break;
         }
+        if (journaledReset && resultingMatching != currentMatching) {
+            // The algorithm worked on its own copy; bring its result into the journaled matching.
+            currentMatching.copyAssignmentFrom(resultingMatching);
+        } else {
+            currentMatching = resultingMatching;
+        }
+        MatchingValidator.check(currentMatching);
     }
 
     private void resetState() {
-        this.currentMatching = (Matching) deepClone(this.initialMatching);
-        this.currentHousesToArrive = (ArrayList<House>) deepClone(this.initialHousesToArrive);
-        this.currentHouseholdsToArrive = (ArrayList<Household>) deepClone(this.initialHouseholdsToArrive);
-        this.currentTimestepsLeft = (Integer) deepClone(initialTimestepsLeft);
+        if (journaledReset) {
+            this.initialMatching.rollbackJournal();
+            this.currentMatching = this.initialMatching;
+            this.currentHousesToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_RESET, this.initialHousesToArrive);
+            this.currentHouseholdsToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_RESET, this.initialHouseholdsToArrive);
+            this.currentTimestepsLeft = initialTimestepsLeft;
+            MatchingValidator.check(this.currentMatching);
+            return;
+        }
+        this.currentMatching = copy(CloneStatistics.Site.DYNAMIC_MATCHING_RESET, this.initialMatching);
+        this.currentHousesToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_RESET, this.initialHousesToArrive);
+        this.currentHouseholdsToArrive = CloneStatistics.copyList(CloneStatistics.Site.DYNAMIC_MATCHING_RESET, this.initialHouseholdsToArrive);
+        this.currentTimestepsLeft = initialTimestepsLeft;
     }
 
+    private static Matching copy(CloneStatistics.Site site, Matching matching) {
+        return CloneStatistics.copy(site, matching, Matching::copy, Matching::estimateCopyBytes);
+    }
+
+    // Note that with journaled resets, this is also the matching that is being worked on during a run.
     public Matching getInitialMatching() {
         return initialMatching;
     }
 
+    public boolean hasJournaledReset() {
+        return journaledReset;
+    }
+
+    public int getTimestepCount() {
+        return timestepCount;
+    }
+
+    public boolean isOneSided() {
+        return oneSided;
+    }
+
+    // The houses and households that arrive over the course of a run, in order of arrival.
+    public List<House> getInitialHousesToArrive() {
+        return Collections.unmodifiableList(initialHousesToArrive);
+    }
+
+    public List<Household> getInitialHouseholdsToArrive() {
+        return Collections.unmodifiableList(initialHouseholdsToArrive);
+    }
+
+    // Sets the Grader of the input, initial and current matchings alike; e.g. after loading a MatchingSnapshot,
+    // which does not contain one.
+    public void setGrader(Grader grader) {
+        inputMatching.setGrader(grader);
+        initialMatching.setGrader(grader);
+        if (currentMatching != initialMatching) {
+            currentMatching.setGrader(grader);
+        }
+    }
+
     public Matching getInputMatching() {
         return inputMatching;
     }
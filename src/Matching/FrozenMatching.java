@@ -0,0 +1,225 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import HousingMarket.HousingMarket;
+import Main.Grader;
+import Main.GradingStrategy;
+import Miscellaneous.IntBitSet;
+
+import java.util.*;
+
+// Immutable snapshot of a Matching, see Matching.freeze. Offers the same read API, backed by plain arrays.
+// All state is copied at creation and kept in final fields, so any number of threads may read one FrozenMatching
+// concurrently, without locks or further copies. Later changes to the original Matching do not show up here.
+// Grading goes through the Grader of the original Matching, which is shared rather than copied.
+public final class FrozenMatching {
+
+    private final List<House> houses;
+    private final List<Household> households;
+    private final List<Household> householdsWithPriority;
+    private final List<Household> elderlyHouseholds;
+    private final House[] housesByID;
+    private final Household[] householdsByID;
+    private final int[] householdOfHouse; // By house ID; Matching.NO_ID if householdless.
+    private final int[] houseOfHousehold; // By household ID; Matching.NO_ID if houseless.
+    private final int edgeCount;
+    private final Set<Integer> householdlessHousesIDs;
+    private final Set<Integer> houselessHouseholdsIDs;
+    private final Set<Integer> householdsMovedByWOSMA;
+    private final IndexSpace indexSpace;
+    private final int nextID;
+    private final int amtSWIChainsExecuted;
+    private final int amtSWICyclesExecuted;
+    private final float averageSWIChainLength;
+    private final float averageSWICycleLength;
+    private final Grader grader;
+    private final HousingMarket housingMarket;
+
+    FrozenMatching(Matching matching) {
+        this.nextID = matching.getNextID();
+        this.houses = Collections.unmodifiableList(new ArrayList<House>(matching.getHouses()));
+        this.households = Collections.unmodifiableList(new ArrayList<Household>(matching.getHouseholds()));
+        this.householdsWithPriority = Collections.unmodifiableList(new ArrayList<Household>(matching.getHouseholdsWithPriority()));
+        this.elderlyHouseholds = Collections.unmodifiableList(new ArrayList<Household>(matching.getElderlyHouseholds()));
+        this.housesByID = new House[nextID];
+        this.householdsByID = new Household[nextID];
+        this.householdOfHouse = new int[nextID];
+        this.houseOfHousehold = new int[nextID];
+        for (House house : houses) {
+            housesByID[house.getID()] = house;
+            householdOfHouse[house.getID()] = matching.getHouseholdIDOfHouse(house.getID());
+        }
+        for (Household household : households) {
+            householdsByID[household.getID()] = household;
+            houseOfHousehold[household.getID()] = matching.getHouseIDOfHousehold(household.getID());
+        }
+        this.edgeCount = matching.getEdgeCount();
+        // IntBitSets, so that these iterate in ascending order of ID, just like those of a Matching.
+        IntBitSet householdlessHousesIDs = new IntBitSet(nextID);
+        householdlessHousesIDs.addAll(matching.getHouseholdlessHousesIDs());
+        IntBitSet houselessHouseholdsIDs = new IntBitSet(nextID);
+        houselessHouseholdsIDs.addAll(matching.getHouselessHouseholdsIDs());
+        this.householdlessHousesIDs = Collections.unmodifiableSet(householdlessHousesIDs);
+        this.houselessHouseholdsIDs = Collections.unmodifiableSet(houselessHouseholdsIDs);
+        this.householdsMovedByWOSMA = Collections.unmodifiableSet(new HashSet<Integer>(matching.getHouseholdsMovedByWOSMA()));
+        this.indexSpace = new IndexSpace(houses, households);
+        this.amtSWIChainsExecuted = matching.getAmtSWIChainsExecuted();
+        this.amtSWICyclesExecuted = matching.getAmtSWICyclesExecuted();
+        this.averageSWIChainLength = matching.getAverageSWIChainLength();
+        this.averageSWICycleLength = matching.getAverageSWICycleLength();
+        this.grader = matching.getGrader();
+        this.housingMarket = matching.getHousingMarket();
+    }
+
+    public Grader getGrader() {
+        return grader;
+    }
+
+    public HousingMarket getHousingMarket() {
+        return housingMarket;
+    }
+
+    public float grade(int houseID, int householdID, GradingStrategy gradingStrategy) {
+        return grader.apply(houseID, householdID, gradingStrategy);
+    }
+
+    // Sums in the same order as Matching.gradeAverage does for a strategy that is not tracked, so both give the same
+    // result then. For a tracked strategy (see Matching.trackScore) the Matching returns its running sum instead, which
+    // has been rounded along every link and unlink, and can differ from this one in the last bits.
+    public float gradeAverage(GradingStrategy gradingStrategy) {
+        float scoreSum = 0;
+        for (Household household : households) {
+            int houseID = houseOfHousehold[household.getID()];
+            if (houseID != Matching.NO_ID) {
+                scoreSum += grade(houseID, household.getID(), gradingStrategy);
+            }
+        }
+        return scoreSum / households.size();
+    }
+
+    public House getHouse(int id) {
+        if (id < 0 || id >= housesByID.length) {
+            return null;
+        }
+        return housesByID[id];
+    }
+
+    public Household getHousehold(int id) {
+        if (id < 0 || id >= householdsByID.length) {
+            return null;
+        }
+        return householdsByID[id];
+    }
+
+    public List<House> getHouses() {
+        return houses;
+    }
+
+    public List<Household> getHouseholds() {
+        return households;
+    }
+
+    public List<Household> getHouseholdsWithPriority() {
+        return householdsWithPriority;
+    }
+
+    public List<Household> getElderlyHouseholds() {
+        return elderlyHouseholds;
+    }
+
+    public Set<Integer> getHouseholdlessHousesIDs() {
+        return householdlessHousesIDs;
+    }
+
+    public Set<Integer> getHouselessHouseholdsIDs() {
+        return houselessHouseholdsIDs;
+    }
+
+    // Returns Matching.NO_ID if the house has no household, or is not part of this matching.
+    public int getHouseholdIDOfHouse(int houseID) {
+        if (houseID < 0 || houseID >= householdOfHouse.length) {
+            return Matching.NO_ID;
+        }
+        return householdOfHouse[houseID];
+    }
+
+    // Returns Matching.NO_ID if the household has no house, or is not part of this matching.
+    public int getHouseIDOfHousehold(int householdID) {
+        if (householdID < 0 || householdID >= houseOfHousehold.length) {
+            return Matching.NO_ID;
+        }
+        return houseOfHousehold[householdID];
+    }
+
+    public Household getHouseholdFromHouse(int houseID) {
+        return getHousehold(getHouseholdIDOfHouse(houseID));
+    }
+
+    public House getHouseFromHousehold(int householdID) {
+        return getHouse(getHouseIDOfHousehold(householdID));
+    }
+
+    public boolean isHouseMatched(int houseID) {
+        return getHouseholdIDOfHouse(houseID) != Matching.NO_ID;
+    }
+
+    public boolean isHouseholdMatched(int householdID) {
+        return getHouseIDOfHousehold(householdID) != Matching.NO_ID;
+    }
+
+    public boolean hasEdge(int houseID, int householdID) {
+        return householdID != Matching.NO_ID && getHouseholdIDOfHouse(houseID) == householdID;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public IndexSpace getIndexSpace() {
+        return indexSpace;
+    }
+
+    public int getNextID() {
+        return nextID;
+    }
+
+    public Set<Integer> getHouseholdsMovedByWOSMA() {
+        return householdsMovedByWOSMA;
+    }
+
+    public int getAmtSWIChainsExecuted() {
+        return amtSWIChainsExecuted;
+    }
+
+    public int getAmtSWICyclesExecuted() {
+        return amtSWICyclesExecuted;
+    }
+
+    public float getAverageSWIChainLength() {
+        return averageSWIChainLength;
+    }
+
+    public float getAverageSWICycleLength() {
+        return averageSWICycleLength;
+    }
+
+    public String toString() {
+        if (grader == null) {
+            return this.households.toString();
+        }
+        StringBuilder result = new StringBuilder(this.households.toString()).append(" -- (");
+        boolean first = true;
+        for (Household household : households) {
+            int houseID = houseOfHousehold[household.getID()];
+            if (houseID != Matching.NO_ID) {
+                if (!first) {
+                    result.append(", ");
+                }
+                result.append("{").append(houseID).append(",").append(household.getID()).append("}");
+                first = false;
+            }
+        }
+        return result.append(")").toString();
+    }
+}
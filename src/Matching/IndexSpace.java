@@ -0,0 +1,96 @@
+package Matching;
+
+import HousingMarket.HousingMarketVertex;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Dense numbering of a fixed set of houses and households: houses get indices 0..H-1 and households 0..F-1, in the
+// order in which they were given. Vertex IDs (see Matching.nextID) interleave houses and households and may have gaps,
+// so algorithms that want plain int[] or float[] state per vertex should work on these indices instead.
+// Translation is O(1) in both directions. An IndexSpace never changes after creation; Matching.getIndexSpace hands
+// out a cached one that is replaced whenever a house or household is added or removed.
+public class IndexSpace {
+
+    public static final int NO_INDEX = -1;
+
+    private final int[] houseIDs;
+    private final int[] householdIDs;
+    private final int[] houseIndexOfID; // NO_INDEX for IDs that are not houses in this space.
+    private final int[] householdIndexOfID; // Likewise for households.
+
+    // The lists may contain any kind of vertex, so that e.g. the MCPMA can number its dummies along with the rest.
+    public IndexSpace(List<? extends HousingMarketVertex> houses, List<? extends HousingMarketVertex> households) {
+        this.houseIDs = new int[houses.size()];
+        this.householdIDs = new int[households.size()];
+        int maxID = 0;
+        for (int i = 0; i < houses.size(); i++) {
+            houseIDs[i] = houses.get(i).getID();
+            maxID = Math.max(maxID, houseIDs[i]);
+        }
+        for (int i = 0; i < households.size(); i++) {
+            householdIDs[i] = households.get(i).getID();
+            maxID = Math.max(maxID, householdIDs[i]);
+        }
+        this.houseIndexOfID = new int[maxID + 1];
+        this.householdIndexOfID = new int[maxID + 1];
+        Arrays.fill(houseIndexOfID, NO_INDEX);
+        Arrays.fill(householdIndexOfID, NO_INDEX);
+        for (int i = 0; i < houseIDs.length; i++) {
+            houseIndexOfID[houseIDs[i]] = i;
+        }
+        for (int i = 0; i < householdIDs.length; i++) {
+            householdIndexOfID[householdIDs[i]] = i;
+        }
+    }
+
+    public int getHouseCount() {
+        return houseIDs.length;
+    }
+
+    public int getHouseholdCount() {
+        return householdIDs.length;
+    }
+
+    public int getHouseID(int houseIndex) {
+        return houseIDs[houseIndex];
+    }
+
+    public int getHouseholdID(int householdIndex) {
+        return householdIDs[householdIndex];
+    }
+
+    // Returns NO_INDEX if the ID does not belong to a house in this space.
+    public int getHouseIndex(int houseID) {
+        if (houseID < 0 || houseID >= houseIndexOfID.length) {
+            return NO_INDEX;
+        }
+        return houseIndexOfID[houseID];
+    }
+
+    // Returns NO_INDEX if the ID does not belong to a household in this space.
+    public int getHouseholdIndex(int householdID) {
+        if (householdID < 0 || householdID >= householdIndexOfID.length) {
+            return NO_INDEX;
+        }
+        return householdIndexOfID[householdID];
+    }
+
+    public int[] getHouseIDs() {
+        return houseIDs.clone();
+    }
+
+    public int[] getHouseholdIDs() {
+        return householdIDs.clone();
+    }
+
+    // Returns, per household index, the index of the house that household lives in, or NO_INDEX.
+    // The matching must contain the vertices of this space; houses outside of it also map to NO_INDEX.
+    public int[] houseIndicesOfHouseholds(Matching matching) {
+        int[] result = new int[householdIDs.length];
+        for (int i = 0; i < householdIDs.length; i++) {
+            result[i] = getHouseIndex(matching.getHouseIDOfHousehold(householdIDs[i]));
+        }
+        return result;
+    }
+}
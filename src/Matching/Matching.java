@@ -1,27 +1,36 @@
 package Matching;
 
-import Algorithms.MCPMA.MatchGraph;
 import HousingMarket.House.House;
 import HousingMarket.Household.Household;
 import HousingMarket.HousingMarket;
-import HousingMarket.HousingMarketVertex;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.stream.Collectors;
 
+import Main.GradeFunction;
 import Main.Grader;
 import Main.GradingStrategy;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleGraph;
-
-import static java.util.stream.Collectors.toSet;
+import Main.PreferenceLists;
+import Miscellaneous.CloneStatistics;
+import Miscellaneous.IntBitSet;
 
 public class Matching implements Serializable {
-    private MatchGraph matchingGraph;
+    // Returned by the ID-based queries below when there is no such house or household.
+    public static final int NO_ID = AssignmentStore.NONE;
+
+    private AssignmentStore assignment;
     private int nextID = 1; //Since default/'null' int (read: id) is 0.
     private ArrayList<House> houses = new ArrayList<House>();
     private ArrayList<Household> households = new ArrayList<Household>();
+    // ID-indexed lookup tables, kept in sync with _houses_ and _households_. Slot 0 is never used, see _nextID_.
+    private House[] housesByID = new House[16];
+    private Household[] householdsByID = new Household[16];
+    // Kept up to date on every add, remove, connect and disconnect, and handed out as read-only views.
+    // Iterate in ascending order of ID, whatever the history of the matching; see IntBitSet.
+    private IntBitSet householdlessHousesIDs = new IntBitSet();
+    private IntBitSet houselessHouseholdsIDs = new IntBitSet();
+    private Set<Integer> householdlessHousesIDsView = Collections.unmodifiableSet(householdlessHousesIDs);
+    private Set<Integer> houselessHouseholdsIDsView = Collections.unmodifiableSet(houselessHouseholdsIDs);
     private ArrayList<Household> householdsWithPriority = new ArrayList<Household>();
     private ArrayList<Household> elderlyHouseholds = new ArrayList<Household>();
     protected ArrayList<Integer> SWIChainLengths = new ArrayList<Integer>();
@@ -29,16 +38,68 @@ public class Matching implements Serializable {
     protected Set<Integer> householdsMovedByWOSMA = new HashSet<Integer>(); // Is reset at the end of WOSMA-calls before return.
 
     private Grader grader;
+    // Opt-in running sums of the grades of all matched pairs, per GradingStrategy (by ordinal); see trackScore.
+    // Kept up to date by _link_ and _unlink_, so that gradeAverage need not walk all households.
+    private static final GradingStrategy[] GRADING_STRATEGIES = GradingStrategy.values();
+    private double[] scoreSums = new double[GRADING_STRATEGIES.length];
+    private boolean[] scoreTracked = new boolean[GRADING_STRATEGIES.length];
+    private int trackedScoresCount = 0;
+
+    // Non-null while changes are being journaled; see startJournal. Deliberately not carried over to copies.
+    private transient MatchingJournal journal = null;
+    // Scratch space for applyCycle: an ID is part of the cycle being applied iff its mark equals _cycleMarkStamp_.
+    private transient int[] cycleMarks;
+    private transient int cycleMarkStamp = 0;
+    // Built on demand by getIndexSpace, and dropped whenever a house or household is added or removed.
+    private transient IndexSpace indexSpace = null;
 
     private HousingMarket housingMarket;
 
     public Matching(HousingMarket housingMarket) {
-        this.matchingGraph = new MatchGraph();
+        this.assignment = new AssignmentStore();
         this.housingMarket = housingMarket;
     }
 
+    // See copy.
+    private Matching(Matching other) {
+        this.assignment = new AssignmentStore(other.assignment);
+        this.nextID = other.nextID;
+        this.houses = new ArrayList<House>(other.houses);
+        this.households = new ArrayList<Household>(other.households);
+        this.housesByID = other.housesByID.clone();
+        this.householdsByID = other.householdsByID.clone();
+        this.householdlessHousesIDs = new IntBitSet(other.householdlessHousesIDs);
+        this.houselessHouseholdsIDs = new IntBitSet(other.houselessHouseholdsIDs);
+        this.householdlessHousesIDsView = Collections.unmodifiableSet(householdlessHousesIDs);
+        this.houselessHouseholdsIDsView = Collections.unmodifiableSet(houselessHouseholdsIDs);
+        this.householdsWithPriority = new ArrayList<Household>(other.householdsWithPriority);
+        this.elderlyHouseholds = new ArrayList<Household>(other.elderlyHouseholds);
+        this.SWIChainLengths = new ArrayList<Integer>(other.SWIChainLengths);
+        this.SWICycleLengths = new ArrayList<Integer>(other.SWICycleLengths);
+        this.householdsMovedByWOSMA = new HashSet<Integer>(other.householdsMovedByWOSMA);
+        this.grader = other.grader;
+        this.scoreSums = other.scoreSums.clone();
+        this.scoreTracked = other.scoreTracked.clone();
+        this.trackedScoresCount = other.trackedScoresCount;
+        this.indexSpace = other.indexSpace;
+        this.housingMarket = other.housingMarket;
+    }
+
     public void setGrader(Grader grader) {
         this.grader = grader;
+        if (grader != null && grader.isGrowable()) {
+            for (House house : houses) {
+                grader.registerHouse(house);
+            }
+            for (Household household : households) {
+                grader.registerHousehold(household);
+            }
+        }
+        for (GradingStrategy gradingStrategy : GRADING_STRATEGIES) {
+            if (scoreTracked[gradingStrategy.ordinal()]) {
+                scoreSums[gradingStrategy.ordinal()] = computeScoreSum(gradingStrategy);
+            }
+        }
     }
 
     public Grader getGrader() {
@@ -49,13 +110,17 @@ public class Matching implements Serializable {
         return grader.apply(houseID, householdID, gradingStrategy);
     }
 
+    // O(1) if _gradingStrategy_ is tracked, see trackScore; O(n) otherwise.
     public float gradeAverage(GradingStrategy gradingStrategy) throws HouseholdLinkedToMultipleException, HouseholdLinkedToHouseholdException {
+        if (scoreTracked[gradingStrategy.ordinal()]) {
+            return (float) scoreSums[gradingStrategy.ordinal()] / households.size();
+        }
         float scoreSum = 0;
         int scoreCount = 0;
         for (Household household : households) {
-            House house = this.getHouseFromHousehold(household.getID());
-            if (house != null) {
-                scoreSum += grade(house.getID(), household.getID(), gradingStrategy);
+            int houseID = getHouseIDOfHousehold(household.getID());
+            if (houseID != NO_ID) {
+                scoreSum += grade(houseID, household.getID(), gradingStrategy);
                 scoreCount++;
             } else {
                 scoreCount++;
@@ -64,11 +129,92 @@ public class Matching implements Serializable {
         return scoreSum/scoreCount;
     }
 
+    // From now on, keeps a running sum of the grades of all matched pairs under _gradingStrategy_. Every connect and
+    // disconnect then costs one extra grade lookup per tracked strategy, in exchange for O(1) gradeAverage and
+    // getScoreSum. Meant for algorithms that need the objective after every move. Requires a Grader.
+    public void trackScore(GradingStrategy gradingStrategy) {
+        if (!scoreTracked[gradingStrategy.ordinal()]) {
+            scoreSums[gradingStrategy.ordinal()] = computeScoreSum(gradingStrategy);
+            scoreTracked[gradingStrategy.ordinal()] = true;
+            trackedScoresCount++;
+        }
+    }
+
+    public void untrackScore(GradingStrategy gradingStrategy) {
+        if (scoreTracked[gradingStrategy.ordinal()]) {
+            scoreTracked[gradingStrategy.ordinal()] = false;
+            scoreSums[gradingStrategy.ordinal()] = 0;
+            trackedScoresCount--;
+        }
+    }
+
+    public boolean isScoreTracked(GradingStrategy gradingStrategy) {
+        return scoreTracked[gradingStrategy.ordinal()];
+    }
+
+    // Sum of the grades of all matched pairs. O(1) if _gradingStrategy_ is tracked, O(n) otherwise.
+    public double getScoreSum(GradingStrategy gradingStrategy) {
+        if (scoreTracked[gradingStrategy.ordinal()]) {
+            return scoreSums[gradingStrategy.ordinal()];
+        }
+        return computeScoreSum(gradingStrategy);
+    }
+
+    private double computeScoreSum(GradingStrategy gradingStrategy) {
+        double scoreSum = 0;
+        for (Household household : households) {
+            int houseID = getHouseIDOfHousehold(household.getID());
+            if (houseID != NO_ID) {
+                scoreSum += grade(houseID, household.getID(), gradingStrategy);
+            }
+        }
+        return scoreSum;
+    }
+
+    // Change in getScoreSum if the household were moved to _newHouseID_ (NO_ID: made houseless), without moving it.
+    // Whoever lives in _newHouseID_ would be made houseless. Costs at most three grade lookups.
+    public double scoreDeltaOfMove(int householdID, int newHouseID, GradingStrategy gradingStrategy) {
+        int currentHouseID = getHouseIDOfHousehold(householdID);
+        if (currentHouseID == newHouseID) {
+            return 0;
+        }
+        double delta = 0;
+        if (currentHouseID != NO_ID) {
+            delta -= grade(currentHouseID, householdID, gradingStrategy);
+        }
+        if (newHouseID != NO_ID) {
+            delta += grade(newHouseID, householdID, gradingStrategy);
+            int occupantID = getHouseholdIDOfHouse(newHouseID);
+            if (occupantID != NO_ID) {
+                delta -= grade(newHouseID, occupantID, gradingStrategy);
+            }
+        }
+        return delta;
+    }
+
+    // Change in getScoreSum that applyCycle(_householdIDs_, _houseIDs_) would bring about, without applying it.
+    // Assumes the cycle is valid; see applyCycle.
+    public double scoreDeltaOfCycle(int[] householdIDs, int[] houseIDs, GradingStrategy gradingStrategy) {
+        GradeFunction grades = grader.forStrategy(gradingStrategy);
+        double delta = 0;
+        for (int i = 0; i < householdIDs.length; i++) {
+            int currentHouseID = getHouseIDOfHousehold(householdIDs[i]);
+            if (currentHouseID != NO_ID) {
+                delta -= grades.grade(currentHouseID, householdIDs[i]);
+            }
+            if (houseIDs[i] != NO_ID) {
+                delta += grades.grade(houseIDs[i], householdIDs[i]);
+            }
+        }
+        return delta;
+    }
+
     public int addHouse(House house) throws HouseIDAlreadyPresentException {
         if (house.getID() != 0) {
             if (houseIDNotAlreadyPresent(house.getID())) {
+                reserveID(house.getID());
                 this.houses.add(house);
-                this.matchingGraph.addVertex(house);
+                indexHouse(house);
                 return house.getID();
             }
             else { throw new HouseIDAlreadyPresentException("House ID was already present."); }
@@ -76,7 +222,7 @@ public class Matching implements Serializable {
             int newInt = getAndIncrementID();
             house.setID(newInt);
             this.houses.add(house);
-            this.matchingGraph.addVertex(house);
+            indexHouse(house);
             return newInt;
         }
     }
@@ -84,14 +230,15 @@ public class Matching implements Serializable {
     public int addHousehold(Household household) throws HouseholdIDAlreadyPresentException {
         if (household.getID() != 0) {
             if (householdIDNotAlreadyPresent(household.getID())) {
+                reserveID(household.getID());
                 this.households.add(household);
+                indexHousehold(household);
                 if (household.getPriority()) {
                     this.householdsWithPriority.add(household);
                 }
                 if (household.getAge() >= 65) {
                     this.elderlyHouseholds.add(household);
                 }
-                this.matchingGraph.addVertex(household);
                 return household.getID();
             }
             else { throw new HouseholdIDAlreadyPresentException("Household ID was already present."); }
@@ -99,45 +246,137 @@ public class Matching implements Serializable {
             int newInt = getAndIncrementID();
             household.setID(newInt);
             this.households.add(household);
+            indexHousehold(household);
             if (household.getPriority()) {
                 this.householdsWithPriority.add(household);
             }
             if (household.getAge() >= 65) {
                 this.elderlyHouseholds.add(household);
             }
-            this.matchingGraph.addVertex(household);
             return newInt;
         }
     }
 
     public boolean houseIDNotAlreadyPresent(int houseID) {
-        Optional<House> existingHouse = this.getHouses().stream().filter(h -> h.getID() == houseID).findAny();
-        if (existingHouse.isPresent()) {
-            return false;
-        } else { return true; }
+        return getHouse(houseID) == null;
     }
 
     public boolean householdIDNotAlreadyPresent(int householdID) {
-        Optional<Household> existingHousehold = this.getHouseholds().stream().filter(hh -> hh.getID() == householdID).findAny();
-        if (existingHousehold.isPresent()) {
-            return false;
-        } else { return true; }
+        return getHousehold(householdID) == null;
     }
 
     public void removeHouse(int ID) {
         House house = this.getHouse(ID);
-        this.houses.remove(house);
-        this.matchingGraph.removeVertex(house);
+        if (house != null) {
+            int householdID = this.assignment.getHouseholdID(ID);
+            if (householdID != AssignmentStore.NONE) {
+                unlink(ID, householdID);
+            }
+            int index = removeFromBack(this.houses, house);
+            this.housesByID[ID] = null;
+            this.indexSpace = null;
+            this.householdlessHousesIDs.removeInt(ID);
+            if (journal != null) {
+                journal.recordRemoveHouse(house, index);
+            }
+        }
     }
 
     public void removeHousehold(int ID) {
         Household household = this.getHousehold(ID);
-        this.households.remove(household);
-        this.householdsWithPriority.remove(household);
-        this.elderlyHouseholds.remove(household);
-        this.matchingGraph.removeVertex(household);
+        if (household != null) {
+            int houseID = this.assignment.getHouseID(ID);
+            if (houseID != AssignmentStore.NONE) {
+                unlink(houseID, ID);
+            }
+            int index = removeFromBack(this.households, household);
+            this.householdsByID[ID] = null;
+            this.indexSpace = null;
+            int priorityIndex = removeFromBack(this.householdsWithPriority, household);
+            int elderlyIndex = removeFromBack(this.elderlyHouseholds, household);
+            this.houselessHouseholdsIDs.removeInt(ID);
+            if (journal != null) {
+                journal.recordRemoveHousehold(household, index, priorityIndex, elderlyIndex);
+            }
+        }
+    }
+
+    // Vertices are nearly always removed from the back of their list (see DataProcessor and DynamicMatching),
+    // so searching from the back keeps those removals constant time. Returns the index removed from, or -1.
+    private static <V> int removeFromBack(ArrayList<V> list, V vertex) {
+        int index = list.lastIndexOf(vertex);
+        if (index >= 0) {
+            list.remove(index);
+        }
+        return index;
+    }
+
+    // Newly added vertices are always unmatched.
+    private void indexHouse(House house) {
+        int id = house.getID();
+        if (id >= housesByID.length) {
+            housesByID = Arrays.copyOf(housesByID, Math.max(id + 1, housesByID.length * 2));
+        }
+        housesByID[id] = house;
+        indexSpace = null;
+        householdlessHousesIDs.addInt(id);
+        if (journal != null) {
+            journal.recordAddHouse(house);
+        }
+        // A growable Grader grades arrivals as they come; others ignore this.
+        if (grader != null) {
+            grader.registerHouse(house);
+        }
+    }
+
+    private void indexHousehold(Household household) {
+        int id = household.getID();
+        if (id >= householdsByID.length) {
+            householdsByID = Arrays.copyOf(householdsByID, Math.max(id + 1, householdsByID.length * 2));
+        }
+        householdsByID[id] = household;
+        indexSpace = null;
+        houselessHouseholdsIDs.addInt(id);
+        if (journal != null) {
+            journal.recordAddHousehold(household);
+        }
+        if (grader != null) {
+            grader.registerHousehold(household);
+        }
+    }
+
+    // Makes sure IDs handed out later on never collide with an ID that was assigned elsewhere,
+    // e.g. when the vertices of one matching are added to a fresh one.
+    private void reserveID(int ID) {
+        if (ID >= this.nextID) {
+            this.nextID = ID + 1;
+        }
+    }
+
+    // Used by MatchingSnapshot to restore a matching exactly, including IDs handed out to vertices removed since.
+    void restoreNextID(int nextID) {
+        reserveID(nextID - 1);
     }
 
+    // Used by MatchingSnapshot. Checks that the vacancy sets written along with a snapshot match the assignment it was
+    // restored from; their order need not be restored, as it only depends on their members.
+    void checkVacancies(int[] householdlessHousesIDs, int[] houselessHouseholdsIDs) {
+        if (householdlessHousesIDs.length != this.householdlessHousesIDs.size()
+                || houselessHouseholdsIDs.length != this.houselessHouseholdsIDs.size()) {
+            throw new IllegalArgumentException("Vacancies do not match the assignment.");
+        }
+        IntBitSet seen = new IntBitSet(nextID);
+        for (int houseID : householdlessHousesIDs) {
+            if (!this.householdlessHousesIDs.containsInt(houseID) || !seen.addInt(houseID)) {
+                throw new IllegalArgumentException("House " + houseID + " is not householdless, or listed twice.");
+            }
+        }
+        for (int householdID : houselessHouseholdsIDs) {
+            if (!this.houselessHouseholdsIDs.containsInt(householdID) || !seen.addInt(householdID)) {
+                throw new IllegalArgumentException("Household " + householdID + " is not houseless, or listed twice.");
+            }
+        }
+    }
 
     private int getAndIncrementID() {
         int result = this.nextID;
@@ -149,46 +388,215 @@ public class Matching implements Serializable {
             throws HouseAlreadyMatchedException, HouseholdAlreadyMatchedException {
         House house = this.getHouse(houseID);
         Household household = this.getHousehold(householdID);
-        if (!this.matchingGraph.edgesOf(house).isEmpty()) {
+        if (this.assignment.isHouseMatched(houseID)) {
             throw new HouseAlreadyMatchedException("Error: House " + house.toString() + " is already matched!");
-        } else if (!this.matchingGraph.edgesOf(household).isEmpty()) {
+        } else if (this.assignment.isHouseholdMatched(householdID)) {
             throw new HouseholdAlreadyMatchedException("Error: Household " + household.toString() + " is already matched!");
         } else {
-            this.matchingGraph.addEdge(house, household);
+            link(house.getID(), household.getID());
         }
     }
 
     public void disconnect(int houseID, int householdID) {
-        House house = this.getHouse(houseID);
-        Household household = this.getHousehold(householdID);
-        this.matchingGraph.removeEdge(house, household);
+        if (this.assignment.containsEdge(houseID, householdID)) {
+            unlink(houseID, householdID);
+        }
+    }
+
+    // Every change to the assignment goes through _link_ and _unlink_, which keep the vacancy sets
+    // and the journal up to date. Both assume the caller has checked that the change is valid.
+    private void link(int houseID, int householdID) {
+        this.assignment.connect(houseID, householdID);
+        this.householdlessHousesIDs.removeInt(houseID);
+        this.houselessHouseholdsIDs.removeInt(householdID);
+        if (trackedScoresCount > 0) {
+            updateScoreSums(houseID, householdID, 1);
+        }
+        if (journal != null) {
+            journal.recordConnect(houseID, householdID);
+        }
+    }
+
+    private void unlink(int houseID, int householdID) {
+        this.assignment.disconnect(houseID, householdID);
+        this.householdlessHousesIDs.addInt(houseID);
+        this.houselessHouseholdsIDs.addInt(householdID);
+        if (trackedScoresCount > 0) {
+            updateScoreSums(houseID, householdID, -1);
+        }
+        if (journal != null) {
+            journal.recordDisconnect(houseID, householdID);
+        }
+    }
+
+    private void updateScoreSums(int houseID, int householdID, int sign) {
+        for (GradingStrategy gradingStrategy : GRADING_STRATEGIES) {
+            if (scoreTracked[gradingStrategy.ordinal()]) {
+                scoreSums[gradingStrategy.ordinal()] += sign * grade(houseID, householdID, gradingStrategy);
+            }
+        }
+    }
+
+    // Makes this matching's assignment equal to that of _other_, which must hold the same houses and households;
+    // typically because _other_ is the output of an algorithm that was run on a copy of this matching.
+    // Only the households whose house differs are touched, so that a journal records just the actual changes.
+    public void copyAssignmentFrom(Matching other) {
+        ArrayList<Integer> householdsToConnect = new ArrayList<Integer>();
+        for (Household household : this.households) {
+            int householdID = household.getID();
+            int currentHouseID = this.assignment.getHouseID(householdID);
+            int otherHouseID = other.assignment.getHouseID(householdID);
+            if (currentHouseID != otherHouseID) {
+                if (currentHouseID != AssignmentStore.NONE) {
+                    unlink(currentHouseID, householdID);
+                }
+                if (otherHouseID != AssignmentStore.NONE) {
+                    householdsToConnect.add(householdID);
+                }
+            }
+        }
+        for (int householdID : householdsToConnect) {
+            link(other.assignment.getHouseID(householdID), householdID);
+        }
+        this.SWIChainLengths.clear();
+        this.SWIChainLengths.addAll(other.SWIChainLengths);
+        this.SWICycleLengths.clear();
+        this.SWICycleLengths.addAll(other.SWICycleLengths);
+        this.householdsMovedByWOSMA.clear();
+        this.householdsMovedByWOSMA.addAll(other.householdsMovedByWOSMA);
+    }
+
+    // From now on, records every add, remove, connect and disconnect, so that rollbackJournal can undo them.
+    public void startJournal() {
+        this.journal = new MatchingJournal(nextID, SWIChainLengths.size(), SWICycleLengths.size(), householdsMovedByWOSMA);
+    }
+
+    public void stopJournal() {
+        this.journal = null;
+    }
+
+    public boolean isJournaling() {
+        return journal != null;
+    }
+
+    // Undoes all journaled changes, newest first, bringing the matching back to its state at startJournal.
+    // Costs time proportional to the amount of changes rather than to the size of the matching.
+    // Journaling continues afterwards, from that same state.
+    public void rollbackJournal() {
+        if (journal == null) {
+            return;
+        }
+        MatchingJournal replayedJournal = this.journal;
+        this.journal = null; // Undoing a change must not itself be journaled.
+        MatchingJournal.Change change = replayedJournal.pop();
+        while (change != null) {
+            switch (change.getType()) {
+                case CONNECT:
+                    unlink(change.getHouseID(), change.getHouseholdID());
+                    break;
+                case DISCONNECT:
+                    link(change.getHouseID(), change.getHouseholdID());
+                    break;
+                case ADD_HOUSE:
+                    removeFromBack(this.houses, change.getHouse());
+                    this.housesByID[change.getHouseID()] = null;
+                    this.indexSpace = null;
+                    this.householdlessHousesIDs.removeInt(change.getHouseID());
+                    break;
+                case ADD_HOUSEHOLD:
+                    removeFromBack(this.households, change.getHousehold());
+                    removeFromBack(this.householdsWithPriority, change.getHousehold());
+                    removeFromBack(this.elderlyHouseholds, change.getHousehold());
+                    this.householdsByID[change.getHouseholdID()] = null;
+                    this.indexSpace = null;
+                    this.houselessHouseholdsIDs.removeInt(change.getHouseholdID());
+                    break;
+                case REMOVE_HOUSE:
+                    this.houses.add(change.getIndex(), change.getHouse());
+                    indexHouse(change.getHouse());
+                    break;
+                case REMOVE_HOUSEHOLD:
+                    this.households.add(change.getIndex(), change.getHousehold());
+                    if (change.getPriorityIndex() >= 0) {
+                        this.householdsWithPriority.add(change.getPriorityIndex(), change.getHousehold());
+                    }
+                    if (change.getElderlyIndex() >= 0) {
+                        this.elderlyHouseholds.add(change.getElderlyIndex(), change.getHousehold());
+                    }
+                    indexHousehold(change.getHousehold());
+                    break;
+            }
+            change = replayedJournal.pop();
+        }
+        this.nextID = replayedJournal.getNextID();
+        this.SWIChainLengths.subList(Math.min(replayedJournal.getSWIChainLengthsSize(), this.SWIChainLengths.size()),
+                this.SWIChainLengths.size()).clear();
+        this.SWICycleLengths.subList(Math.min(replayedJournal.getSWICycleLengthsSize(), this.SWICycleLengths.size()),
+                this.SWICycleLengths.size()).clear();
+        this.householdsMovedByWOSMA.clear();
+        this.householdsMovedByWOSMA.addAll(replayedJournal.getHouseholdsMovedByWOSMA());
+        this.journal = replayedJournal;
     }
 
     public void dissolveConnections() throws HouseLinkedToMultipleException, HouseLinkedToHouseException {
         for (House house : this.getHouses()) {
-            Household household = this.getHouseholdFromHouse(house.getID());
-            if (household != null) {
-                disconnect(house.getID(), household.getID());
+            int householdID = getHouseholdIDOfHouse(house.getID());
+            if (householdID != NO_ID) {
+                disconnect(house.getID(), householdID);
             }
         }
     }
 
     public House getHouse(int id) {
-        Optional<House> result = this.houses.stream()
-                .filter(h -> h.getID() == id)
-                .findFirst();
-        if (result.isPresent()) {
-            return result.get();
-        } else { return null; }
+        if (id < 0 || id >= housesByID.length) {
+            return null;
+        }
+        return housesByID[id];
     }
 
     public Household getHousehold(int id) {
-        Optional<Household> result = this.households.stream()
-                .filter(h -> h.getID() == id)
-                .findFirst();
-        if (result.isPresent()) {
-            return result.get();
-        } else { return null; }
+        if (id < 0 || id >= householdsByID.length) {
+            return null;
+        }
+        return householdsByID[id];
+    }
+
+    // Independent copy that can be changed without affecting this matching, and vice versa. Rather than serializing the
+    // whole object graph, as deep clones used to: houses, households, the Grader and the HousingMarket are not changed
+    // by a Matching once they have an ID, so they are shared rather than copied, and only the assignment, the ID index,
+    // the vacancy sets and the lists are. The journal is not carried over.
+    public Matching copy() {
+        return new Matching(this);
+    }
+
+    // Rough number of bytes that copy allocates, for CloneStatistics. Shared vertices are not counted.
+    public long estimateCopyBytes() {
+        return 2 * CloneStatistics.intArrayBytes(assignment.getCapacity())
+                + CloneStatistics.referenceArrayBytes(housesByID.length)
+                + CloneStatistics.referenceArrayBytes(householdsByID.length)
+                + CloneStatistics.intArrayBytes(householdlessHousesIDs.size() + nextID)
+                + CloneStatistics.intArrayBytes(houselessHouseholdsIDs.size() + nextID)
+                + CloneStatistics.referenceArrayBytes(houses.size())
+                + CloneStatistics.referenceArrayBytes(households.size())
+                + CloneStatistics.referenceArrayBytes(householdsWithPriority.size())
+                + CloneStatistics.referenceArrayBytes(elderlyHouseholds.size())
+                + CloneStatistics.referenceArrayBytes(SWIChainLengths.size() + SWICycleLengths.size())
+                + CloneStatistics.referenceArrayBytes(2 * householdsMovedByWOSMA.size());
+    }
+
+    // Immutable snapshot of the current state, which any number of threads may read concurrently; see FrozenMatching.
+    // Costs one O(n) copy, after which this matching may be changed freely without affecting the snapshot.
+    public FrozenMatching freeze() {
+        return new FrozenMatching(this);
+    }
+
+    // Dense numbering of the current houses and households, in the order of getHouses and getHouseholds.
+    // Built once and reused until the vertex set changes; connecting and disconnecting do not affect it.
+    public IndexSpace getIndexSpace() {
+        if (indexSpace == null) {
+            indexSpace = new IndexSpace(houses, households);
+        }
+        return indexSpace;
     }
 
     public ArrayList<House> getHouses() {
@@ -207,77 +615,63 @@ public class Matching implements Serializable {
         return this.elderlyHouseholds;
     }
 
+    // Returns a live, read-only view. Copy it first if the matching is changed while iterating over it.
     public Set<Integer> getHouseholdlessHousesIDs() {
-        Set<Integer> householdlessHousesIDs = getHouses().stream().filter(h -> {
-            try {
-                return getHouseholdFromHouse(h.getID()) == null;
-            } catch (HouseLinkedToHouseException e) {
-                e.printStackTrace();
-            } catch (HouseLinkedToMultipleException e) {
-                e.printStackTrace();
-            }
-            return false;
-        }).map(v -> v.getID()).collect(toSet());
-        return householdlessHousesIDs;
+        return householdlessHousesIDsView;
     }
 
+    // Returns a live, read-only view. Copy it first if the matching is changed while iterating over it.
     public Set<Integer> getHouselessHouseholdsIDs() {
-        Set<Integer> houselessHouseholdsIDs = getHouseholds().stream().filter(h -> {
-            try {
-                return getHouseFromHousehold(h.getID()) == null;
-            } catch (HouseholdLinkedToMultipleException e) {
-                e.printStackTrace();
-            } catch (HouseholdLinkedToHouseholdException e) {
-                e.printStackTrace();
-            }
-            return false;
-        }).map(v -> v.getID()).collect(toSet());
-        return houselessHouseholdsIDs;
+        return houselessHouseholdsIDsView;
+    }
+
+    // Returns the ID of the household living in the house, or NO_ID if there is none. Does no invariant checking;
+    // use MatchingValidator for that. Meant for hot loops, where the object-returning variants below are overkill.
+    public int getHouseholdIDOfHouse(int houseID) {
+        return this.assignment.getHouseholdID(houseID);
+    }
+
+    // Returns the ID of the house the household lives in, or NO_ID if there is none. See getHouseholdIDOfHouse.
+    public int getHouseIDOfHousehold(int householdID) {
+        return this.assignment.getHouseID(householdID);
+    }
+
+    public boolean isHouseMatched(int houseID) {
+        return this.assignment.isHouseMatched(houseID);
+    }
+
+    public boolean isHouseholdMatched(int householdID) {
+        return this.assignment.isHouseholdMatched(householdID);
+    }
+
+    public int getEdgeCount() {
+        return this.assignment.getEdgeCount();
     }
 
     public Household getHouseholdFromHouse(int houseID)
             throws HouseLinkedToHouseException,HouseLinkedToMultipleException {
-        House house = this.getHouse(houseID);
-        if (this.matchingGraph.edgesOf(house).size() == 1) {
-            DefaultEdge edge = this.matchingGraph.edgesOf(house).iterator().next();
-            HousingMarketVertex household = this.matchingGraph.getEdgeTarget(edge);
-            if (household instanceof Household) {
-                return (Household) household;
-            } else throw new HouseLinkedToHouseException("Error: House " + house.toString() + " is linked " +
-                    "to house " + household.toString() + "!");
-        } else if (this.matchingGraph.edgesOf(house).size() > 1) {
-            throw new HouseLinkedToMultipleException("Error: House " + house.toString() + " is linked " +
-                    "to multiples vertices!");
+        // The assignment store only ever links a house to a single household,
+        // so the linked-to-house and linked-to-multiple states can no longer occur.
+        int householdID = getHouseholdIDOfHouse(houseID);
+        if (householdID == NO_ID) {
+            return null;
         }
-        else return null;
+        return this.getHousehold(householdID);
     }
 
 
     public House getHouseFromHousehold(int householdID)
             throws HouseholdLinkedToHouseholdException,HouseholdLinkedToMultipleException {
-        Household household = this.getHousehold(householdID);
-        if (this.matchingGraph.edgesOf(household).size() == 1) {
-            DefaultEdge edge = this.matchingGraph.edgesOf(household).iterator().next();
-            HousingMarketVertex house = this.matchingGraph.getEdgeSource(edge);
-            if (house instanceof House) {
-                return (House) house;
-            } else {
-                throw new HouseholdLinkedToHouseholdException("Error: Household " + household.toString() +
-                        " is linked to household " + house.toString() + "!");
-            }
-        } else if (this.matchingGraph.edgesOf(household).size() > 1) {
-            throw new HouseholdLinkedToMultipleException("Error: Household " + household.toString()
-                    + " is linked to multiples vertices!");
-        } else return null;
+        // See getHouseholdFromHouse.
+        int houseID = getHouseIDOfHousehold(householdID);
+        if (houseID == NO_ID) {
+            return null;
+        }
+        return this.getHouse(houseID);
     }
 
     public boolean hasEdge(int houseID, int householdID) throws HouseLinkedToMultipleException, HouseLinkedToHouseException {
-        Household connectedHousehold = this.getHouseholdFromHouse(houseID);
-        if (connectedHousehold == null) { return false; }
-        else if (connectedHousehold.getID() == householdID) {
-            return true;
-        }
-        else { return false; }
+        return this.assignment.containsEdge(houseID, householdID);
     }
 
     public boolean isHouseID(int ID) throws IDNotPresentException {
@@ -288,30 +682,78 @@ public class Matching implements Serializable {
         } else { throw new IDNotPresentException("Requested ID belonged to neither a house nor a household."); }
     }
 
+    // Assigns house _houseIDs_[i] to household _householdIDs_[i] for every i, all at once.
+    // A house ID of 0 leaves the household without a house. Every house handed out must either be householdless,
+    // or belong to one of the households in _householdIDs_. Their houses that are not handed out become householdless.
+    // The whole cycle is validated before anything changes; applying it then takes O(k) time for k households.
+    public void applyCycle(int[] householdIDs, int[] houseIDs) throws HouseAlreadyMatchedException, HouseholdAlreadyMatchedException {
+        if (householdIDs.length != houseIDs.length) {
+            throw new IllegalArgumentException("Cycle has " + householdIDs.length + " households but "
+                    + houseIDs.length + " houses.");
+        }
+        // Houses and households never share IDs, so one set of marks serves for both.
+        int stamp = nextCycleMarkStamp();
+        for (int householdID : householdIDs) {
+            if (getHousehold(householdID) == null) {
+                throw new IllegalArgumentException("Household " + householdID + " is not part of this matching.");
+            }
+            if (cycleMarks[householdID] == stamp) {
+                throw new HouseholdAlreadyMatchedException("Error: Household " + householdID
+                        + " occurs in the cycle more than once!");
+            }
+            cycleMarks[householdID] = stamp;
+        }
+        for (int houseID : houseIDs) {
+            if (houseID == AssignmentStore.NONE) {
+                continue;
+            }
+            if (getHouse(houseID) == null) {
+                throw new IllegalArgumentException("House " + houseID + " is not part of this matching.");
+            }
+            if (cycleMarks[houseID] == stamp) {
+                throw new HouseAlreadyMatchedException("Error: House " + houseID + " is handed out more than once!");
+            }
+            cycleMarks[houseID] = stamp;
+            int ownerID = this.assignment.getHouseholdID(houseID);
+            if (ownerID != AssignmentStore.NONE && cycleMarks[ownerID] != stamp) {
+                throw new HouseAlreadyMatchedException("Error: House " + houseID + " is already matched to household "
+                        + ownerID + ", which is not part of the cycle!");
+            }
+        }
+
+        for (int householdID : householdIDs) {
+            int currentHouseID = this.assignment.getHouseID(householdID);
+            if (currentHouseID != AssignmentStore.NONE) {
+                unlink(currentHouseID, householdID);
+            }
+        }
+        for (int i = 0; i < householdIDs.length; i++) {
+            if (houseIDs[i] != AssignmentStore.NONE) {
+                link(houseIDs[i], householdIDs[i]);
+            }
+        }
+    }
+
+    private int nextCycleMarkStamp() {
+        if (cycleMarks == null || cycleMarks.length < nextID) {
+            cycleMarks = new int[Math.max(nextID, 16)];
+            cycleMarkStamp = 0;
+        }
+        if (cycleMarkStamp == Integer.MAX_VALUE) {
+            Arrays.fill(cycleMarks, 0);
+            cycleMarkStamp = 0;
+        }
+        cycleMarkStamp++;
+        return cycleMarkStamp;
+    }
+
     // Part of the WorkerOptimalStableMatchingAlgorithm.
     public void executeCycle(List<Integer> cycle, int nilValue, boolean print, GradingStrategy gradingStrategy) throws HouseholdLinkedToMultipleException, HouseholdLinkedToHouseholdException, HouseholdAlreadyMatchedException, HouseAlreadyMatchedException, MatchingEvaluator.HouseholdIncomeTooHighException, PreferredNoHouseholdlessHouseException {
         int edgesCount = cycle.size();
 
-        boolean isChain = false;
-
-        // Disconnect all households from whatever houses they own, and keep a list of these houses.
-        ArrayList<Integer> housesList = new ArrayList<Integer>();
-        for (int i = 0; i<edgesCount; i++) {
-            int householdID = cycle.get(i);
-            if (householdID != nilValue) {
-                House house = getHouseFromHousehold(householdID);
-                if (house != null) {
-                    housesList.add(house.getID());
-                    disconnect(house.getID(), householdID);
-                } else {
-                    housesList.add(null);
-                }
-                householdsMovedByWOSMA.add(householdID);
-            } else {
-                isChain = true;
-                housesList.add(null);
-            }
-        }
+        // Keep a list of the houses that the households in the cycle currently own; 0 for nil and houseless households.
+        int[] housesList = new int[edgesCount];
+        boolean isChain = collectCycleHouses(cycle, nilValue, housesList);
         if(print) {
             if (isChain) {
                 System.out.println("Chain has size: " + edgesCount);
@@ -319,55 +761,38 @@ public class Matching implements Serializable {
             }
         }
 
+        // Every household takes the house of the next household in the cycle. Nothing is changed until all new
+        // houses are known, so the householdless houses below are exactly those that were householdless beforehand.
+        int[] cycleHouseholdIDs = new int[edgesCount];
+        int[] newHouseIDs = new int[edgesCount];
+        int movingCount = 0;
         for (int i = 0; i<edgesCount; i++) {
-            int sourceVertex;
-            int targetVertex;
-            if (i == edgesCount-1) {
-                sourceVertex = cycle.get(i);
-                targetVertex = cycle.get(0);
-            } else {
-                sourceVertex = cycle.get(i);
-                targetVertex = cycle.get(i+1);
-            }
+            int sourceVertex = cycle.get(i);
+            int targetVertex = cycle.get((i + 1) % edgesCount);
 
-            if (sourceVertex != nilValue && targetVertex != nilValue) {
-                if (i+1 < housesList.size()) {
-                    connect(housesList.get(i + 1), sourceVertex);
-                } else {
-                    connect(housesList.get(0), sourceVertex);
-                }
-            } else if (sourceVertex == nilValue) {
-                continue; // Household was already previously disconnected, so no change.
+            if (sourceVertex == nilValue) {
+                continue; // Nil does not own a house, so no change.
+            }
+            cycleHouseholdIDs[movingCount] = sourceVertex;
+            if (targetVertex != nilValue) {
+                newHouseIDs[movingCount] = housesList[(i + 1) % edgesCount];
             } else { // targetVertex == nilValue, so there is an empty house that the household prefers to their own.
                 // We now choose to connect him with that house amongst the empty houses, that they prefer most,
                 // so long as they do indeed prefer it to their current house.
-                Set<Integer> householdlessHouses = getHouseholdlessHousesIDs();
-                float highestScore;
-                if (housesList.get(i) == null) {
-                    highestScore = 0;
-                } else {
-                    highestScore = grader.apply(housesList.get(i), sourceVertex, gradingStrategy);
-                }
-                House bestHouse = null;
-                for (int houseID : householdlessHouses) {
-                    // _housesList_ houses will either go to *another* household in the chain,
-                    // or this household didn't want it anyway, since this is not a cycle.
-                    if (!housesList.contains(houseID)) {
-                        float candidateScore = grader.apply(houseID, sourceVertex, gradingStrategy);
-                        if (candidateScore >= highestScore) {
-                            highestScore = candidateScore;
-                            bestHouse = getHouse(houseID);
-                        }
-                    }
+                float currentScore = 0;
+                if (housesList[i] != AssignmentStore.NONE) {
+                    currentScore = grader.forStrategy(gradingStrategy).grade(housesList[i], sourceVertex);
                 }
-                if (bestHouse == null) {
+                int bestHouseID = bestHouseholdlessHouse(sourceVertex, currentScore, false, gradingStrategy);
+                if (bestHouseID == AssignmentStore.NONE) {
                     throw new PreferredNoHouseholdlessHouseException("Cycle indicated that household would prefer some" +
                             " other house to their current house, but no such house was found.");
-                } else {
-                    connect(bestHouse.getID(), sourceVertex);
                 }
+                newHouseIDs[movingCount] = bestHouseID;
             }
+            movingCount++;
         }
+        applyCycle(Arrays.copyOf(cycleHouseholdIDs, movingCount), Arrays.copyOf(newHouseIDs, movingCount));
 
         if (isChain) {
             SWIChainLengths.add(edgesCount);
@@ -381,26 +806,9 @@ public class Matching implements Serializable {
     public void executeCycleIRCycles(List<Integer> cycle, int nilValue, HashMap<Integer, Integer> householdInitialHouseMap, boolean print, GradingStrategy gradingStrategy) throws HouseholdLinkedToMultipleException, HouseholdLinkedToHouseholdException, HouseholdAlreadyMatchedException, HouseAlreadyMatchedException, MatchingEvaluator.HouseholdIncomeTooHighException, PreferredNoHouseholdlessHouseException {
         int edgesCount = cycle.size();
 
-        boolean isChain = false;
-
-        // Disconnect all households from whatever houses they own, and keep a list of these houses.
-        ArrayList<Integer> housesList = new ArrayList<Integer>();
-        for (int i = 0; i<edgesCount; i++) {
-            int householdID = cycle.get(i);
-            if (householdID != nilValue) {
-                House house = getHouseFromHousehold(householdID);
-                if (house != null) {
-                    housesList.add(house.getID());
-                    disconnect(house.getID(), householdID);
-                } else {
-                    housesList.add(null);
-                }
-                householdsMovedByWOSMA.add(householdID);
-            } else {
-                isChain = true;
-                housesList.add(null);
-            }
-        }
+        // Keep a list of the houses that the households in the cycle currently own; 0 for nil and houseless households.
+        int[] housesList = new int[edgesCount];
+        boolean isChain = collectCycleHouses(cycle, nilValue, housesList);
         if(print) {
             if (isChain) {
                 System.out.println("Chain has size: " + edgesCount);
@@ -408,69 +816,56 @@ public class Matching implements Serializable {
             }
         }
 
+        // See executeCycle.
+        int[] cycleHouseholdIDs = new int[edgesCount];
+        int[] newHouseIDs = new int[edgesCount];
+        int movingCount = 0;
         for (int i = 0; i<edgesCount; i++) {
-            int sourceVertex;
-            int targetVertex;
-            if (i == edgesCount-1) {
-                sourceVertex = cycle.get(i);
-                targetVertex = cycle.get(0);
-            } else {
-                sourceVertex = cycle.get(i);
-                targetVertex = cycle.get(i+1);
-            }
+            int sourceVertex = cycle.get(i);
+            int targetVertex = cycle.get((i + 1) % edgesCount);
 
-            if (sourceVertex != nilValue && targetVertex != nilValue) {
-                if (i+1 < housesList.size()) {
-                    connect(housesList.get(i + 1), sourceVertex);
-                } else {
-                    connect(housesList.get(0), sourceVertex);
-                }
-            } else if (sourceVertex == nilValue) {
-                continue; // Household was already previously disconnected, so no change.
+            if (sourceVertex == nilValue) {
+                continue; // Nil does not own a house, so no change.
+            }
+            cycleHouseholdIDs[movingCount] = sourceVertex;
+            if (targetVertex != nilValue) {
+                newHouseIDs[movingCount] = housesList[(i + 1) % edgesCount];
             } else { // targetVertex == nilValue, so there is an empty house that the household may move to.
                 // We now choose to connect them with that house amongst the empty houses, that they prefer most;
                 // we trust that they will at least prefer this house to their initial house, or it equals said house;
                 // but we add a check just to be sure.
-                Set<Integer> householdlessHouses = getHouseholdlessHousesIDs();
-                float highestScore = 0;
+                GradeFunction grades = grader.forStrategy(gradingStrategy);
                 float initialScore = 0;
                 if (householdInitialHouseMap.containsKey(sourceVertex)) {
-                    initialScore = grader.apply(householdInitialHouseMap.get(sourceVertex), sourceVertex, gradingStrategy);
-                }
-                House bestHouse = null;
-                for (int houseID : householdlessHouses) {
-                    // _housesList_ houses will either go to *another* household in the chain,
-                    // or this household didn't want it anyway, since this is not a cycle.
-                    if (!housesList.contains(houseID)) {
-                        float candidateScore = grader.apply(houseID, sourceVertex, gradingStrategy);
-                        if (candidateScore >= highestScore && candidateScore > initialScore) {
-                            highestScore = candidateScore;
-                            bestHouse = getHouse(houseID);
-                        }
-                    }
+                    initialScore = grades.grade(householdInitialHouseMap.get(sourceVertex), sourceVertex);
                 }
-                if (bestHouse == null) {
+                int bestHouseID = bestHouseholdlessHouse(sourceVertex, initialScore, true, gradingStrategy);
+                if (bestHouseID == AssignmentStore.NONE) {
                     if ((householdInitialHouseMap.containsKey(sourceVertex))) {
+                        // Besides the householdless houses, the household may return to its initial house if that is
+                        // the house which the cycle frees up: the one owned by the household that follows nil.
                         int initialHouseID = householdInitialHouseMap.get(sourceVertex);
-                        if (householdlessHouses.contains(initialHouseID)) {
-                            bestHouse = getHouse(initialHouseID);
+                        if (householdlessHousesIDs.containsInt(initialHouseID)
+                                || initialHouseID == housesList[(i + 2) % edgesCount]) {
+                            bestHouseID = initialHouseID;
                         }
                     }
                 }
-                if (bestHouse == null) {
+                if (bestHouseID == AssignmentStore.NONE) {
                     if (!householdInitialHouseMap.containsKey(sourceVertex)
                             || (householdInitialHouseMap.containsKey(sourceVertex)
-                            && grader.apply(householdInitialHouseMap.get(sourceVertex), sourceVertex, gradingStrategy) == 0.0)) {
+                            && grades.grade(householdInitialHouseMap.get(sourceVertex), sourceVertex) == 0.0)) {
                         // Do nothing. Household may be moved back into houselessness.
                     } else {
                     throw new PreferredNoHouseholdlessHouseException("Cycle indicated that household would prefer some" +
                             " other house to their initial house, but no such house was found.");
                     }
-                } else {
-                    connect(bestHouse.getID(), sourceVertex);
                 }
+                newHouseIDs[movingCount] = bestHouseID;
             }
+            movingCount++;
         }
+        applyCycle(Arrays.copyOf(cycleHouseholdIDs, movingCount), Arrays.copyOf(newHouseIDs, movingCount));
 
         if (isChain) {
             SWIChainLengths.add(edgesCount);
@@ -481,6 +876,53 @@ public class Matching implements Serializable {
         }
     }
 
+    // The householdless house that the household grades highest, among those it grades at least _minimum_ (or more
+    // than _minimum_, if _strict_); AssignmentStore.NONE if there is none. If the Grader has preference lists for the
+    // strategy, this is the first householdless house in the household's list. Otherwise all householdless houses are
+    // graded, in ascending order of ID, and the last of the best wins. Either way, ties go to the highest house ID.
+    private int bestHouseholdlessHouse(int householdID, float minimum, boolean strict, GradingStrategy gradingStrategy) {
+        PreferenceLists preferences = grader.getPreferenceLists(gradingStrategy);
+        int householdIndex = preferences == null ? IndexSpace.NO_INDEX
+                : preferences.getIndexSpace().getHouseholdIndex(householdID);
+        if (householdIndex != IndexSpace.NO_INDEX) {
+            IndexSpace preferenceSpace = preferences.getIndexSpace();
+            int count = strict ? preferences.countAbove(householdIndex, minimum)
+                    : preferences.countAtLeast(householdIndex, minimum);
+            int houseIndex = preferences.firstAmong(householdIndex, count,
+                    candidate -> householdlessHousesIDs.containsInt(preferenceSpace.getHouseID(candidate)));
+            return houseIndex == IndexSpace.NO_INDEX ? AssignmentStore.NONE : preferenceSpace.getHouseID(houseIndex);
+        }
+        GradeFunction grades = grader.forStrategy(gradingStrategy);
+        float highestScore = minimum;
+        int bestHouseID = AssignmentStore.NONE;
+        for (int houseID = householdlessHousesIDs.nextInt(0); houseID >= 0;
+             houseID = householdlessHousesIDs.nextInt(houseID + 1)) {
+            float candidateScore = grades.grade(houseID, householdID);
+            if (candidateScore >= highestScore && (!strict || candidateScore > minimum)) {
+                highestScore = candidateScore;
+                bestHouseID = houseID;
+            }
+        }
+        return bestHouseID;
+    }
+
+    // Fills _housesList_ with the houses currently owned by the households in the cycle and marks these households as
+    // moved by WOSMA. Returns whether the cycle is a chain, i.e. whether it passes through nil.
+    private boolean collectCycleHouses(List<Integer> cycle, int nilValue, int[] housesList) {
+        boolean isChain = false;
+        for (int i = 0; i < cycle.size(); i++) {
+            int householdID = cycle.get(i);
+            if (householdID != nilValue) {
+                housesList[i] = this.assignment.getHouseID(householdID);
+                householdsMovedByWOSMA.add(householdID);
+            } else {
+                isChain = true;
+                housesList[i] = AssignmentStore.NONE;
+            }
+        }
+        return isChain;
+    }
+
     public HousingMarket getHousingMarket() {
         return this.housingMarket;
     }
@@ -493,7 +935,7 @@ public class Matching implements Serializable {
             if (householdlessHousesIDs.isEmpty()) {
                 break;
             }
-            ArrayList<Integer> householdlessHousesIDsArray = new ArrayList<Integer>(this.getHouseholdlessHousesIDs().stream().collect(Collectors.toList()));
+            ArrayList<Integer> householdlessHousesIDsArray = new ArrayList<Integer>(this.getHouseholdlessHousesIDs());
             int chosenHouseID = rand.nextInt(householdlessHousesIDsArray.size());
             this.connect(chosenHouseID, household.getID());
         }
@@ -549,21 +991,15 @@ public class Matching implements Serializable {
         String result = this.households + " -- (";
         int i = 0;
         for (Household household : households) {
-            try {
-                House house = getHouseFromHousehold(household.getID());
-                if (house != null) {
-                    String string = "{" + house.getID() + "," + household.getID() + "}";
-                    if (i == 0) {
-                        result += string;
-                        i++;
-                    } else {
-                        result += ", " + string;
-                    }
+            int houseID = getHouseIDOfHousehold(household.getID());
+            if (houseID != NO_ID) {
+                String string = "{" + houseID + "," + household.getID() + "}";
+                if (i == 0) {
+                    result += string;
+                    i++;
+                } else {
+                    result += ", " + string;
                 }
-            } catch (HouseholdLinkedToHouseholdException e) {
-                e.printStackTrace();
-            } catch (HouseholdLinkedToMultipleException e) {
-                e.printStackTrace();
             }
         }
         result += ")";
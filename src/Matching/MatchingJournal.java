@@ -0,0 +1,146 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+// Log of the changes made to a Matching since journaling was started, in the order they were made.
+// Matching replays it backwards to undo those changes; see Matching.startJournal and Matching.rollbackJournal.
+public class MatchingJournal {
+
+    public enum ChangeType {
+        CONNECT,
+        DISCONNECT,
+        ADD_HOUSE,
+        ADD_HOUSEHOLD,
+        REMOVE_HOUSE,
+        REMOVE_HOUSEHOLD
+    }
+
+    private ArrayList<Change> changes = new ArrayList<Change>();
+
+    // Matching state that is not changed through the journaled operations, recorded when journaling started.
+    private final int nextID;
+    private final int SWIChainLengthsSize;
+    private final int SWICycleLengthsSize;
+    private final Set<Integer> householdsMovedByWOSMA;
+
+    public MatchingJournal(int nextID, int SWIChainLengthsSize, int SWICycleLengthsSize, Set<Integer> householdsMovedByWOSMA) {
+        this.nextID = nextID;
+        this.SWIChainLengthsSize = SWIChainLengthsSize;
+        this.SWICycleLengthsSize = SWICycleLengthsSize;
+        this.householdsMovedByWOSMA = new HashSet<Integer>(householdsMovedByWOSMA);
+    }
+
+    public void recordConnect(int houseID, int householdID) {
+        changes.add(new Change(ChangeType.CONNECT, houseID, householdID, null, null, -1, -1, -1));
+    }
+
+    public void recordDisconnect(int houseID, int householdID) {
+        changes.add(new Change(ChangeType.DISCONNECT, houseID, householdID, null, null, -1, -1, -1));
+    }
+
+    public void recordAddHouse(House house) {
+        changes.add(new Change(ChangeType.ADD_HOUSE, house.getID(), 0, house, null, -1, -1, -1));
+    }
+
+    public void recordAddHousehold(Household household) {
+        changes.add(new Change(ChangeType.ADD_HOUSEHOLD, 0, household.getID(), null, household, -1, -1, -1));
+    }
+
+    public void recordRemoveHouse(House house, int index) {
+        changes.add(new Change(ChangeType.REMOVE_HOUSE, house.getID(), 0, house, null, index, -1, -1));
+    }
+
+    // _priorityIndex_ and _elderlyIndex_ are -1 if the household was not in the respective list.
+    public void recordRemoveHousehold(Household household, int index, int priorityIndex, int elderlyIndex) {
+        changes.add(new Change(ChangeType.REMOVE_HOUSEHOLD, 0, household.getID(), null, household,
+                index, priorityIndex, elderlyIndex));
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    // Removes and returns the most recent change, or null if there are none left.
+    public Change pop() {
+        if (changes.isEmpty()) {
+            return null;
+        }
+        return changes.remove(changes.size() - 1);
+    }
+
+    public int getNextID() {
+        return nextID;
+    }
+
+    public int getSWIChainLengthsSize() {
+        return SWIChainLengthsSize;
+    }
+
+    public int getSWICycleLengthsSize() {
+        return SWICycleLengthsSize;
+    }
+
+    public Set<Integer> getHouseholdsMovedByWOSMA() {
+        return householdsMovedByWOSMA;
+    }
+
+    public static class Change {
+        private final ChangeType type;
+        private final int houseID;
+        private final int householdID;
+        private final House house;
+        private final Household household;
+        private final int index;
+        private final int priorityIndex;
+        private final int elderlyIndex;
+
+        private Change(ChangeType type, int houseID, int householdID, House house, Household household,
+                       int index, int priorityIndex, int elderlyIndex) {
+            this.type = type;
+            this.houseID = houseID;
+            this.householdID = householdID;
+            this.house = house;
+            this.household = household;
+            this.index = index;
+            this.priorityIndex = priorityIndex;
+            this.elderlyIndex = elderlyIndex;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public int getHouseID() {
+            return houseID;
+        }
+
+        public int getHouseholdID() {
+            return householdID;
+        }
+
+        public House getHouse() {
+            return house;
+        }
+
+        public Household getHousehold() {
+            return household;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getPriorityIndex() {
+            return priorityIndex;
+        }
+
+        public int getElderlyIndex() {
+            return elderlyIndex;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import HousingMarket.Household.HouseholdType;
+import HousingMarket.HousingMarket;
+import Main.GradeFunction;
+import Main.Grader;
+import Main.GradingStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.EnumMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that Matching.rollbackJournal brings a matching back to exactly the state it had at startJournal, as
+// DynamicMatching's journaled reset relies on.
+public class MatchingJournalTest {
+
+    @Test
+    public void rollbackUndoesAddsRemovesAndMoves() throws Exception {
+        Matching matching = createMatching();
+        matching.startJournal();
+        Matching before = matching.copy();
+
+        changeEverything(matching);
+        assertFalse(before.getHouseholds().equals(matching.getHouseholds()));
+
+        matching.rollbackJournal();
+        assertSameState(before, matching);
+    }
+
+    @Test
+    public void journalingContinuesAfterRollback() throws Exception {
+        Matching matching = createMatching();
+        matching.startJournal();
+        Matching before = matching.copy();
+
+        changeEverything(matching);
+        matching.rollbackJournal();
+        assertTrue(matching.isJournaling());
+
+        changeEverything(matching);
+        matching.rollbackJournal();
+        assertSameState(before, matching);
+    }
+
+    @Test
+    public void rollbackRestoresTrackedScores() throws Exception {
+        Matching matching = createMatching();
+        matching.trackScore(GradingStrategy.Random);
+        matching.startJournal();
+        Matching before = matching.copy();
+
+        changeEverything(matching);
+        matching.rollbackJournal();
+        assertSameState(before, matching);
+        assertEquals(before.gradeAverage(GradingStrategy.Random), matching.gradeAverage(GradingStrategy.Random),
+                1e-6f);
+    }
+
+    // Six houses and six households, of which some have priority and some are elderly, with the first four of each
+    // matched up.
+    private static Matching createMatching() throws Exception {
+        Matching matching = new Matching(new HousingMarket(2017, 100));
+        EnumMap<GradingStrategy, GradeFunction> stratToFunction = new EnumMap<>(GradingStrategy.class);
+        for (GradingStrategy gradingStrategy : GradingStrategy.values()) {
+            stratToFunction.put(gradingStrategy, (houseID, householdID) -> ((houseID * 31 + householdID) % 7) / 7f);
+        }
+        matching.setGrader(new Grader(stratToFunction));
+        for (int i = 0; i < 6; i++) {
+            matching.addHouse(createHouse(i));
+            matching.addHousehold(createHousehold(i, i % 2 == 0, 40 + 10 * i));
+        }
+        for (int i = 0; i < 4; i++) {
+            matching.connect(matching.getHouses().get(i).getID(), matching.getHouseholds().get(i).getID());
+        }
+        return matching;
+    }
+
+    // Adds and removes houses and households, among which priority and elderly ones, both new and old ones, moves
+    // households around and records SWI cycles, as one timestep of a DynamicMatching might.
+    private static void changeEverything(Matching matching) throws Exception {
+        int newHouseID = matching.addHouse(createHouse(10));
+        int newPriorityID = matching.addHousehold(createHousehold(11, true, 30));
+        int newElderlyID = matching.addHousehold(createHousehold(12, false, 70));
+        matching.connect(newHouseID, newElderlyID);
+
+        int oldHouseholdID = matching.getHouseholds().get(0).getID();
+        int oldHouseID = matching.getHouseIDOfHousehold(oldHouseholdID);
+        matching.disconnect(oldHouseID, oldHouseholdID);
+        int vacantHouseID = matching.getHouses().get(5).getID();
+        matching.connect(vacantHouseID, oldHouseholdID);
+        matching.connect(oldHouseID, newPriorityID);
+
+        // Removed from the middle of their lists, matched or not.
+        matching.removeHousehold(matching.getHouseholds().get(2).getID());
+        matching.removeHousehold(matching.getHouseholds().get(4).getID());
+        matching.removeHouse(matching.getHouses().get(1).getID());
+        matching.removeHousehold(newElderlyID);
+
+        matching.SWIChainLengths.add(3);
+        matching.SWICycleLengths.add(0);
+        matching.getHouseholdsMovedByWOSMA().add(oldHouseholdID);
+    }
+
+    private static House createHouse(int i) {
+        return new House("Utrecht", "label" + i, 500 + i, 1 + i % 4, i % 3 == 0);
+    }
+
+    private static Household createHousehold(int i, boolean priority, int age) throws Exception {
+        return new Household("Utrecht", "3500AA", "label" + i, 20000 + 1000 * i, age, HouseholdType.values()[i % 4],
+                1 + i % 3, priority);
+    }
+
+    private static void assertSameState(Matching expected, Matching actual) throws Exception {
+        assertEquals(expected.getHouses(), actual.getHouses());
+        assertEquals(expected.getHouseholds(), actual.getHouseholds());
+        assertEquals(expected.getHouseholdsWithPriority(), actual.getHouseholdsWithPriority());
+        assertEquals(expected.getElderlyHouseholds(), actual.getElderlyHouseholds());
+        assertEquals(expected.getHouseholdlessHousesIDs(), actual.getHouseholdlessHousesIDs());
+        assertEquals(expected.getHouselessHouseholdsIDs(), actual.getHouselessHouseholdsIDs());
+        assertEquals(expected.getNextID(), actual.getNextID());
+        assertEquals(expected.SWIChainLengths, actual.SWIChainLengths);
+        assertEquals(expected.SWICycleLengths, actual.SWICycleLengths);
+        assertEquals(expected.getHouseholdsMovedByWOSMA(), actual.getHouseholdsMovedByWOSMA());
+        for (Household household : expected.getHouseholds()) {
+            assertEquals(expected.getHouseIDOfHousehold(household.getID()),
+                    actual.getHouseIDOfHousehold(household.getID()));
+        }
+        for (House house : expected.getHouses()) {
+            assertEquals(expected.getHouseholdIDOfHouse(house.getID()), actual.getHouseholdIDOfHouse(house.getID()));
+            assertEquals(house, actual.getHouse(house.getID()));
+        }
+        assertEquals(Collections.emptyList(), MatchingValidator.audit(actual));
+    }
+}
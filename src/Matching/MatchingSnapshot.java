@@ -0,0 +1,416 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import HousingMarket.Household.HouseholdType;
+import HousingMarket.HousingMarket;
+import HousingMarket.HousingMarketVertex;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Compact, versioned binary file format for a Matching or a DynamicMatching, as an alternative to Java serialization.
+// Holds the vertex attributes, the assignment, the WOSMA bookkeeping and, for a DynamicMatching, the arrival queues.
+// The Grader is deliberately not written, since it consists of lambdas; a snapshot may instead carry a reference to
+// a stored grade matrix, and callers set a Grader after loading. Snapshots are read through a memory-mapped file.
+//
+// Layout (big-endian), version 1:
+//   int magic, int version, byte kind (0 = Matching, 1 = DynamicMatching), byte hasGradeMatrixReference
+//   [string gradeMatrixReference]
+//   int stringCount, string* -- every distinct municipality, label and postal code, referred to by index below.
+//   int houseCount, (int id, int municipality, int label, int rent, int roomCount, byte accessibility)*
+//   int householdCount, (int id, int municipality, int postalCode, int label, int income, int age,
+//                        byte householdType, int totalHouseholdCount, byte priority)*
+//   Matching: the one matching; DynamicMatching: input matching, initial matching, int timestepCount,
+//             byte oneSided, byte journaledReset, int[] houses to arrive, int[] households to arrive
+// where a matching is
+//   byte hasHousingMarket, [int year, double freeSpace], int nextID, int[] houses, int[] households,
+//   int edgeCount, (int houseID, int householdID)*, int[] householdless houses, int[] houseless households,
+//   int[] SWI chain lengths, int[] SWI cycle lengths, int[] households moved by WOSMA
+// an int[] is its length followed by its elements, a string its UTF-8 byte count followed by those bytes, and
+// vertices are referred to by ID. All matchings in one file share the House and Household objects.
+public class MatchingSnapshot {
+
+    public static final int MAGIC = 0x534D4D53; // "SMMS"
+    public static final int VERSION = 1;
+
+    private static final byte KIND_MATCHING = 0;
+    private static final byte KIND_DYNAMIC_MATCHING = 1;
+
+    private final Matching matching;
+    private final DynamicMatching dynamicMatching;
+    private final String gradeMatrixReference;
+
+    // Loads a snapshot. If it holds a DynamicMatching, getMatching returns that DynamicMatching's input matching.
+    public MatchingSnapshot(Path path) throws IOException, SnapshotFormatException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Reader reader = new Reader(buffer);
+            try {
+                if (buffer.getInt() != MAGIC) {
+                    throw new SnapshotFormatException("Not a matching snapshot: " + path);
+                }
+                int version = buffer.getInt();
+                if (version != VERSION) {
+                    throw new SnapshotFormatException("Unsupported snapshot version " + version + " in " + path);
+                }
+                byte kind = buffer.get();
+                this.gradeMatrixReference = buffer.get() != 0 ? reader.readString() : null;
+                reader.readVertices();
+                if (kind == KIND_MATCHING) {
+                    this.matching = reader.readMatching();
+                    this.dynamicMatching = null;
+                } else if (kind == KIND_DYNAMIC_MATCHING) {
+                    Matching inputMatching = reader.readMatching();
+                    Matching initialMatching = reader.readMatching();
+                    int timestepCount = buffer.getInt();
+                    boolean oneSided = buffer.get() != 0;
+                    boolean journaledReset = buffer.get() != 0;
+                    ArrayList<House> housesToArrive = new ArrayList<House>();
+                    for (int houseID : reader.readIntArray()) {
+                        housesToArrive.add(reader.house(houseID));
+                    }
+                    ArrayList<Household> householdsToArrive = new ArrayList<Household>();
+                    for (int householdID : reader.readIntArray()) {
+                        householdsToArrive.add(reader.household(householdID));
+                    }
+                    this.matching = inputMatching;
+                    this.dynamicMatching = new DynamicMatching(inputMatching, initialMatching, housesToArrive,
+                            householdsToArrive, timestepCount, oneSided, journaledReset);
+                } else {
+                    throw new SnapshotFormatException("Unknown snapshot kind " + kind + " in " + path);
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new SnapshotFormatException("Corrupt snapshot " + path + ": " + e);
+            }
+        }
+    }
+
+    public static void write(Path path, Matching matching, String gradeMatrixReference) throws IOException {
+        Writer writer = new Writer(Collections.singletonList(matching), Collections.<House>emptyList(),
+                Collections.<Household>emptyList());
+        try (DataOutputStream out = open(path)) {
+            writer.writeHeader(out, KIND_MATCHING, gradeMatrixReference);
+            writer.writeMatching(out, matching);
+        }
+    }
+
+    // Writes the DynamicMatching as it is between runs, i.e. in its initial state.
+    public static void write(Path path, DynamicMatching dynamicMatching, String gradeMatrixReference) throws IOException {
+        Writer writer = new Writer(Arrays.asList(dynamicMatching.getInputMatching(), dynamicMatching.getInitialMatching()),
+                dynamicMatching.getInitialHousesToArrive(), dynamicMatching.getInitialHouseholdsToArrive());
+        try (DataOutputStream out = open(path)) {
+            writer.writeHeader(out, KIND_DYNAMIC_MATCHING, gradeMatrixReference);
+            writer.writeMatching(out, dynamicMatching.getInputMatching());
+            writer.writeMatching(out, dynamicMatching.getInitialMatching());
+            out.writeInt(dynamicMatching.getTimestepCount());
+            out.writeByte(dynamicMatching.isOneSided() ? 1 : 0);
+            out.writeByte(dynamicMatching.hasJournaledReset() ? 1 : 0);
+            writeVertexIDs(out, dynamicMatching.getInitialHousesToArrive());
+            writeVertexIDs(out, dynamicMatching.getInitialHouseholdsToArrive());
+        }
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+    }
+
+    private static void writeVertexIDs(DataOutputStream out, List<? extends HousingMarketVertex> vertices) throws IOException {
+        out.writeInt(vertices.size());
+        for (HousingMarketVertex vertex : vertices) {
+            out.writeInt(vertex.getID());
+        }
+    }
+
+    private static void writeIntArray(DataOutputStream out, Collection<Integer> values) throws IOException {
+        out.writeInt(values.size());
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    // Null for a snapshot of a plain Matching.
+    public DynamicMatching getDynamicMatching() {
+        return dynamicMatching;
+    }
+
+    public Matching getMatching() {
+        return matching;
+    }
+
+    public boolean isDynamic() {
+        return dynamicMatching != null;
+    }
+
+    // Null if the snapshot was written without one.
+    public String getGradeMatrixReference() {
+        return gradeMatrixReference;
+    }
+
+    // Collects the vertices and strings of all matchings that go into one file, so that each is written only once.
+    private static class Writer {
+        private final LinkedHashMap<Integer, House> houses = new LinkedHashMap<Integer, House>();
+        private final LinkedHashMap<Integer, Household> households = new LinkedHashMap<Integer, Household>();
+        private final LinkedHashMap<String, Integer> strings = new LinkedHashMap<String, Integer>();
+
+        private Writer(List<Matching> matchings, List<House> housesToArrive, List<Household> householdsToArrive) {
+            for (Matching matching : matchings) {
+                for (House house : matching.getHouses()) {
+                    addHouse(house);
+                }
+                for (Household household : matching.getHouseholds()) {
+                    addHousehold(household);
+                }
+            }
+            for (House house : housesToArrive) {
+                addHouse(house);
+            }
+            for (Household household : householdsToArrive) {
+                addHousehold(household);
+            }
+        }
+
+        private void addHouse(House house) {
+            if (houses.putIfAbsent(house.getID(), house) == null) {
+                addString(house.getMunicipality());
+                addString(house.getLabel());
+            }
+        }
+
+        private void addHousehold(Household household) {
+            if (households.putIfAbsent(household.getID(), household) == null) {
+                addString(household.getMunicipality());
+                addString(household.getPostalCode());
+                addString(household.getLabel());
+            }
+        }
+
+        private void addString(String string) {
+            if (string != null && !strings.containsKey(string)) {
+                strings.put(string, strings.size());
+            }
+        }
+
+        private int stringIndex(String string) {
+            return string == null ? -1 : strings.get(string);
+        }
+
+        private void writeHeader(DataOutputStream out, byte kind, String gradeMatrixReference) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(kind);
+            out.writeByte(gradeMatrixReference != null ? 1 : 0);
+            if (gradeMatrixReference != null) {
+                writeString(out, gradeMatrixReference);
+            }
+            out.writeInt(strings.size());
+            for (String string : strings.keySet()) {
+                writeString(out, string);
+            }
+            out.writeInt(houses.size());
+            for (House house : houses.values()) {
+                out.writeInt(house.getID());
+                out.writeInt(stringIndex(house.getMunicipality()));
+                out.writeInt(stringIndex(house.getLabel()));
+                out.writeInt(house.getMonthlyRent());
+                out.writeInt(house.getRoomCount());
+                out.writeByte(house.getAccessibility() ? 1 : 0);
+            }
+            out.writeInt(households.size());
+            for (Household household : households.values()) {
+                out.writeInt(household.getID());
+                out.writeInt(stringIndex(household.getMunicipality()));
+                out.writeInt(stringIndex(household.getPostalCode()));
+                out.writeInt(stringIndex(household.getLabel()));
+                out.writeInt(household.getIncome());
+                out.writeInt(household.getAge());
+                out.writeByte(household.getHouseholdType() == null ? -1 : household.getHouseholdType().ordinal());
+                out.writeInt(household.getTotalHouseholdCount());
+                out.writeByte(household.getPriority() ? 1 : 0);
+            }
+        }
+
+        private void writeMatching(DataOutputStream out, Matching matching) throws IOException {
+            HousingMarket housingMarket = matching.getHousingMarket();
+            out.writeByte(housingMarket != null ? 1 : 0);
+            if (housingMarket != null) {
+                out.writeInt(housingMarket.getYear());
+                out.writeDouble(housingMarket.getFreeSpace());
+            }
+            out.writeInt(matching.getNextID());
+            writeVertexIDs(out, matching.getHouses());
+            writeVertexIDs(out, matching.getHouseholds());
+            out.writeInt(matching.getEdgeCount());
+            for (Household household : matching.getHouseholds()) {
+                int houseID = matching.getHouseIDOfHousehold(household.getID());
+                if (houseID != Matching.NO_ID) {
+                    out.writeInt(houseID);
+                    out.writeInt(household.getID());
+                }
+            }
+            writeIntArray(out, matching.getHouseholdlessHousesIDs());
+            writeIntArray(out, matching.getHouselessHouseholdsIDs());
+            writeIntArray(out, matching.SWIChainLengths);
+            writeIntArray(out, matching.SWICycleLengths);
+            writeIntArray(out, matching.getHouseholdsMovedByWOSMA());
+        }
+
+        private static void writeString(DataOutputStream out, String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private class Reader {
+        private final ByteBuffer buffer;
+        private String[] strings;
+        private final HashMap<Integer, House> houses = new HashMap<Integer, House>();
+        private final HashMap<Integer, Household> households = new HashMap<Integer, Household>();
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void readVertices() throws SnapshotFormatException {
+            strings = new String[readLength(4)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+            int houseCount = buffer.getInt();
+            for (int i = 0; i < houseCount; i++) {
+                int id = buffer.getInt();
+                House house = new House(string(buffer.getInt()), string(buffer.getInt()),
+                        buffer.getInt(), buffer.getInt(), buffer.get() != 0);
+                house.setID(id);
+                houses.put(id, house);
+            }
+            int householdCount = buffer.getInt();
+            for (int i = 0; i < householdCount; i++) {
+                int id = buffer.getInt();
+                String municipality = string(buffer.getInt());
+                String postalCode = string(buffer.getInt());
+                String label = string(buffer.getInt());
+                int income = buffer.getInt();
+                int age = buffer.getInt();
+                byte type = buffer.get();
+                HouseholdType householdType = type < 0 ? null : HouseholdType.values()[type];
+                int totalHouseholdCount = buffer.getInt();
+                boolean priority = buffer.get() != 0;
+                try {
+                    Household household = new Household(municipality, postalCode, label, income, age,
+                            householdType, totalHouseholdCount, priority);
+                    household.setID(id);
+                    households.put(id, household);
+                } catch (Household.InvalidHouseholdException e) {
+                    throw new SnapshotFormatException("Invalid household " + id + ": " + e.getMessage());
+                }
+            }
+        }
+
+        private Matching readMatching() throws SnapshotFormatException {
+            HousingMarket housingMarket = null;
+            if (buffer.get() != 0) {
+                int year = buffer.getInt();
+                double freeSpace = buffer.getDouble();
+                try {
+                    housingMarket = new HousingMarket(year, freeSpace);
+                } catch (HousingMarket.FreeSpaceException e) {
+                    throw new SnapshotFormatException(e.getMessage());
+                }
+            }
+            Matching matching = new Matching(housingMarket);
+            int nextID = buffer.getInt();
+            try {
+                for (int houseID : readIntArray()) {
+                    matching.addHouse(house(houseID));
+                }
+                for (int householdID : readIntArray()) {
+                    matching.addHousehold(household(householdID));
+                }
+                int edgeCount = buffer.getInt();
+                for (int i = 0; i < edgeCount; i++) {
+                    int houseID = buffer.getInt();
+                    int householdID = buffer.getInt();
+                    if (matching.getHouse(houseID) == null || matching.getHousehold(householdID) == null) {
+                        throw new SnapshotFormatException("Edge between house " + houseID + " and household "
+                                + householdID + " refers to a vertex that is not in the matching.");
+                    }
+                    matching.connect(houseID, householdID);
+                }
+            } catch (Matching.HouseIDAlreadyPresentException | Matching.HouseholdIDAlreadyPresentException
+                    | Matching.HouseAlreadyMatchedException | Matching.HouseholdAlreadyMatchedException e) {
+                throw new SnapshotFormatException(e.getMessage());
+            }
+            matching.restoreNextID(nextID);
+            matching.checkVacancies(readIntArray(), readIntArray());
+            for (int length : readIntArray()) {
+                matching.SWIChainLengths.add(length);
+            }
+            for (int length : readIntArray()) {
+                matching.SWICycleLengths.add(length);
+            }
+            for (int householdID : readIntArray()) {
+                matching.householdsMovedByWOSMA.add(householdID);
+            }
+            return matching;
+        }
+
+        private House house(int id) throws SnapshotFormatException {
+            House house = houses.get(id);
+            if (house == null) {
+                throw new SnapshotFormatException("Unknown house " + id + ".");
+            }
+            return house;
+        }
+
+        private Household household(int id) throws SnapshotFormatException {
+            Household household = households.get(id);
+            if (household == null) {
+                throw new SnapshotFormatException("Unknown household " + id + ".");
+            }
+            return household;
+        }
+
+        private int[] readIntArray() throws SnapshotFormatException {
+            int[] result = new int[readLength(4)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = buffer.getInt();
+            }
+            return result;
+        }
+
+        private String readString() throws SnapshotFormatException {
+            byte[] bytes = new byte[readLength(1)];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // A length prefix of elements of at least _elementSize_ bytes each, checked against what is left of the file,
+        // so that a corrupt one is reported rather than allocated.
+        private int readLength(int elementSize) throws SnapshotFormatException {
+            int length = buffer.getInt();
+            if (length < 0 || (long) length * elementSize > buffer.remaining()) {
+                throw new SnapshotFormatException("Corrupt length " + length + " at position "
+                        + (buffer.position() - 4) + ".");
+            }
+            return length;
+        }
+
+        private String string(int index) {
+            return index < 0 ? null : strings[index];
+        }
+    }
+
+    public class SnapshotFormatException extends Exception {
+        public SnapshotFormatException(String errorMessage) { super(errorMessage); }
+    }
+}
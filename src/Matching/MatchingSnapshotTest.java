@@ -0,0 +1,153 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import HousingMarket.Household.HouseholdType;
+import HousingMarket.HousingMarket;
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Round trips of Matchings and DynamicMatchings through MatchingSnapshot files, and corrupt files.
+public class MatchingSnapshotTest {
+
+    @Test
+    public void matchingRoundTrip() throws Exception {
+        Matching matching = createMatching();
+        Path path = Files.createTempFile("matching", ".snapshot");
+        try {
+            MatchingSnapshot.write(path, matching, "reference");
+            MatchingSnapshot snapshot = new MatchingSnapshot(path);
+            assertFalse(snapshot.isDynamic());
+            assertEquals("reference", snapshot.getGradeMatrixReference());
+            assertSameMatching(matching, snapshot.getMatching());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void dynamicMatchingRoundTrip() throws Exception {
+        DynamicMatching dynamicMatching = new DynamicMatching(createMatching(), 3, false, true);
+        Path path = Files.createTempFile("dynamic-matching", ".snapshot");
+        try {
+            MatchingSnapshot.write(path, dynamicMatching, null);
+            MatchingSnapshot snapshot = new MatchingSnapshot(path);
+            assertTrue(snapshot.isDynamic());
+            assertNull(snapshot.getGradeMatrixReference());
+            DynamicMatching loaded = snapshot.getDynamicMatching();
+            assertSameMatching(dynamicMatching.getInputMatching(), loaded.getInputMatching());
+            assertSameMatching(dynamicMatching.getInitialMatching(), loaded.getInitialMatching());
+            assertEquals(dynamicMatching.getTimestepCount(), loaded.getTimestepCount());
+            assertEquals(dynamicMatching.isOneSided(), loaded.isOneSided());
+            assertEquals(dynamicMatching.hasJournaledReset(), loaded.hasJournaledReset());
+            assertSameHouses(dynamicMatching.getInitialHousesToArrive(), loaded.getInitialHousesToArrive());
+            assertSameHouseholds(dynamicMatching.getInitialHouseholdsToArrive(),
+                    loaded.getInitialHouseholdsToArrive());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void truncatedSnapshotIsRejected() throws Exception {
+        Path path = Files.createTempFile("truncated", ".snapshot");
+        try {
+            MatchingSnapshot.write(path, new DynamicMatching(createMatching(), 3, false, true), "reference");
+            long size = Files.size(path);
+            // Cut off the end, from one byte to all of them, and then read it.
+            for (long length = size - 1; length >= 0; length--) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(length);
+                }
+                assertThrows(MatchingSnapshot.SnapshotFormatException.class, () -> new MatchingSnapshot(path),
+                        "Snapshot truncated to " + length + " of " + size + " bytes.");
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Eight houses and eight households of all kinds, with five of them matched up, one household removed so that the
+    // IDs have a gap, and some SWI bookkeeping.
+    private static Matching createMatching() throws Exception {
+        Matching matching = new Matching(new HousingMarket(2017, 100));
+        for (int i = 0; i < 8; i++) {
+            matching.addHouse(new House("Utrecht", "label" + i, 500 + 10 * i, 1 + i % 4, i % 3 == 0));
+            matching.addHousehold(new Household(i % 2 == 0 ? "Utrecht" : "Zeist", "350" + i + "AB", "label" + i,
+                    20000 + 1000 * i, 30 + 7 * i, HouseholdType.values()[i % HouseholdType.values().length],
+                    1 + i % 4, i % 3 == 1));
+        }
+        for (int i = 0; i < 5; i++) {
+            matching.connect(matching.getHouses().get(i).getID(), matching.getHouseholds().get(i).getID());
+        }
+        matching.removeHousehold(matching.getHouseholds().get(6).getID());
+        matching.SWIChainLengths.add(2);
+        matching.SWICycleLengths.add(0);
+        matching.getHouseholdsMovedByWOSMA().add(matching.getHouseholds().get(1).getID());
+        return matching;
+    }
+
+    private static void assertSameMatching(Matching expected, Matching actual) {
+        assertEquals(expected.getNextID(), actual.getNextID());
+        assertEquals(expected.getHousingMarket().getYear(), actual.getHousingMarket().getYear());
+        assertEquals(expected.getHousingMarket().getFreeSpace(), actual.getHousingMarket().getFreeSpace(), 0);
+        assertSameHouses(expected.getHouses(), actual.getHouses());
+        assertSameHouseholds(expected.getHouseholds(), actual.getHouseholds());
+        assertSameHouseholds(expected.getHouseholdsWithPriority(), actual.getHouseholdsWithPriority());
+        assertSameHouseholds(expected.getElderlyHouseholds(), actual.getElderlyHouseholds());
+        for (Household household : expected.getHouseholds()) {
+            assertEquals(expected.getHouseIDOfHousehold(household.getID()),
+                    actual.getHouseIDOfHousehold(household.getID()));
+        }
+        for (House house : expected.getHouses()) {
+            assertEquals(expected.getHouseholdIDOfHouse(house.getID()), actual.getHouseholdIDOfHouse(house.getID()));
+        }
+        assertEquals(expected.getHouseholdlessHousesIDs(), actual.getHouseholdlessHousesIDs());
+        assertEquals(expected.getHouselessHouseholdsIDs(), actual.getHouselessHouseholdsIDs());
+        assertEquals(expected.SWIChainLengths, actual.SWIChainLengths);
+        assertEquals(expected.SWICycleLengths, actual.SWICycleLengths);
+        assertEquals(expected.getHouseholdsMovedByWOSMA(), actual.getHouseholdsMovedByWOSMA());
+    }
+
+    private static void assertSameHouses(List<House> expected, List<House> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            House expectedHouse = expected.get(i);
+            House actualHouse = actual.get(i);
+            assertEquals(expectedHouse.getID(), actualHouse.getID());
+            assertEquals(expectedHouse.getMunicipality(), actualHouse.getMunicipality());
+            assertEquals(expectedHouse.getLabel(), actualHouse.getLabel());
+            assertEquals(expectedHouse.getMonthlyRent(), actualHouse.getMonthlyRent());
+            assertEquals(expectedHouse.getRoomCount(), actualHouse.getRoomCount());
+            assertEquals(expectedHouse.getAccessibility(), actualHouse.getAccessibility());
+        }
+    }
+
+    private static void assertSameHouseholds(List<Household> expected, List<Household> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Household expectedHousehold = expected.get(i);
+            Household actualHousehold = actual.get(i);
+            assertEquals(expectedHousehold.getID(), actualHousehold.getID());
+            assertEquals(expectedHousehold.getMunicipality(), actualHousehold.getMunicipality());
+            assertEquals(expectedHousehold.getPostalCode(), actualHousehold.getPostalCode());
+            assertEquals(expectedHousehold.getLabel(), actualHousehold.getLabel());
+            assertEquals(expectedHousehold.getIncome(), actualHousehold.getIncome());
+            assertEquals(expectedHousehold.getAge(), actualHousehold.getAge());
+            assertEquals(expectedHousehold.getHouseholdType(), actualHousehold.getHouseholdType());
+            assertEquals(expectedHousehold.getTotalHouseholdCount(), actualHousehold.getTotalHouseholdCount());
+            assertEquals(expectedHousehold.getPriority(), actualHousehold.getPriority());
+        }
+    }
+}
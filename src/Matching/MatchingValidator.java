@@ -0,0 +1,176 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import Main.GradingStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Audits all of a Matching's invariants in a single O(n) pass, so that the query methods on Matching need not check
+// them on every call. _check_ is a no-op unless validation is switched on, which is done by running with
+// -Dmatching.validate=true; it is cheap enough to leave calls to it in place for debug runs.
+public class MatchingValidator {
+
+    public static final String PROPERTY = "matching.validate";
+    private static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    // Throws an IllegalStateException listing all violations, if validation is enabled and any are found.
+    public static void check(Matching matching) {
+        if (!ENABLED) {
+            return;
+        }
+        List<String> violations = audit(matching);
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("Matching violates " + violations.size() + " invariant(s): "
+                    + String.join("; ", violations));
+        }
+    }
+
+    // Returns a description of every violated invariant; an empty list means the matching is consistent.
+    public static List<String> audit(Matching matching) {
+        List<String> violations = new ArrayList<String>();
+        int nextID = matching.getNextID();
+
+        // Every vertex is registered under its own ID, only once, and below _nextID_.
+        int matchedHousesCount = 0;
+        int householdlessHousesCount = 0;
+        boolean[] seen = new boolean[nextID];
+        for (House house : matching.getHouses()) {
+            int houseID = house.getID();
+            if (houseID <= Matching.NO_ID || houseID >= nextID) {
+                violations.add("House " + houseID + " has an ID outside of [1, " + nextID + ").");
+                continue;
+            }
+            if (seen[houseID]) {
+                violations.add("ID " + houseID + " is used by more than one vertex.");
+            }
+            seen[houseID] = true;
+            if (matching.getHouse(houseID) != house) {
+                violations.add("House " + houseID + " is not indexed under its ID.");
+            }
+
+            int householdID = matching.getHouseholdIDOfHouse(houseID);
+            if (householdID == Matching.NO_ID) {
+                householdlessHousesCount++;
+                if (!matching.getHouseholdlessHousesIDs().contains(houseID)) {
+                    violations.add("House " + houseID + " has no household, but is not listed as householdless.");
+                }
+            } else {
+                matchedHousesCount++;
+                if (matching.getHousehold(householdID) == null) {
+                    violations.add("House " + houseID + " is matched to " + householdID + ", which is not a household.");
+                } else if (matching.getHouseIDOfHousehold(householdID) != houseID) {
+                    violations.add("House " + houseID + " is matched to household " + householdID
+                            + ", but that household is matched to " + matching.getHouseIDOfHousehold(householdID) + ".");
+                }
+                if (matching.getHouseholdlessHousesIDs().contains(houseID)) {
+                    violations.add("House " + houseID + " has a household, but is listed as householdless.");
+                }
+            }
+        }
+
+        int matchedHouseholdsCount = 0;
+        int houselessHouseholdsCount = 0;
+        for (Household household : matching.getHouseholds()) {
+            int householdID = household.getID();
+            if (householdID <= Matching.NO_ID || householdID >= nextID) {
+                violations.add("Household " + householdID + " has an ID outside of [1, " + nextID + ").");
+                continue;
+            }
+            if (seen[householdID]) {
+                violations.add("ID " + householdID + " is used by more than one vertex.");
+            }
+            seen[householdID] = true;
+            if (matching.getHousehold(householdID) != household) {
+                violations.add("Household " + householdID + " is not indexed under its ID.");
+            }
+
+            int houseID = matching.getHouseIDOfHousehold(householdID);
+            if (houseID == Matching.NO_ID) {
+                houselessHouseholdsCount++;
+                if (!matching.getHouselessHouseholdsIDs().contains(householdID)) {
+                    violations.add("Household " + householdID + " has no house, but is not listed as houseless.");
+                }
+            } else {
+                matchedHouseholdsCount++;
+                if (matching.getHouse(houseID) == null) {
+                    violations.add("Household " + householdID + " is matched to " + houseID + ", which is not a house.");
+                } else if (matching.getHouseholdIDOfHouse(houseID) != householdID) {
+                    violations.add("Household " + householdID + " is matched to house " + houseID
+                            + ", but that house is matched to " + matching.getHouseholdIDOfHouse(houseID) + ".");
+                }
+                if (matching.getHouselessHouseholdsIDs().contains(householdID)) {
+                    violations.add("Household " + householdID + " has a house, but is listed as houseless.");
+                }
+            }
+        }
+
+        // Likewise, no vertex may linger in the ID index after being removed.
+        int indexedHousesCount = 0;
+        int indexedHouseholdsCount = 0;
+        for (int id = 1; id < nextID; id++) {
+            if (matching.getHouse(id) != null) {
+                indexedHousesCount++;
+            }
+            if (matching.getHousehold(id) != null) {
+                indexedHouseholdsCount++;
+            }
+        }
+        if (indexedHousesCount != matching.getHouses().size()) {
+            violations.add(indexedHousesCount + " houses are indexed, but " + matching.getHouses().size() + " are listed.");
+        }
+        if (indexedHouseholdsCount != matching.getHouseholds().size()) {
+            violations.add(indexedHouseholdsCount + " households are indexed, but " + matching.getHouseholds().size()
+                    + " are listed.");
+        }
+
+        // With the membership checks above, equal sizes mean the sets hold no stray IDs.
+        if (matching.getHouseholdlessHousesIDs().size() != householdlessHousesCount) {
+            violations.add(matching.getHouseholdlessHousesIDs().size() + " houses are listed as householdless, but "
+                    + householdlessHousesCount + " are.");
+        }
+        if (matching.getHouselessHouseholdsIDs().size() != houselessHouseholdsCount) {
+            violations.add(matching.getHouselessHouseholdsIDs().size() + " households are listed as houseless, but "
+                    + houselessHouseholdsCount + " are.");
+        }
+        if (matchedHousesCount != matchedHouseholdsCount || matching.getEdgeCount() != matchedHousesCount) {
+            violations.add("Edge count is " + matching.getEdgeCount() + ", but " + matchedHousesCount
+                    + " houses and " + matchedHouseholdsCount + " households are matched.");
+        }
+
+        // Running score sums may drift a little from the exact sum through rounding, but no more than that.
+        for (GradingStrategy gradingStrategy : GradingStrategy.values()) {
+            if (matching.isScoreTracked(gradingStrategy)) {
+                double scoreSum = 0;
+                for (Household household : matching.getHouseholds()) {
+                    int houseID = matching.getHouseIDOfHousehold(household.getID());
+                    if (houseID != Matching.NO_ID) {
+                        scoreSum += matching.grade(houseID, household.getID(), gradingStrategy);
+                    }
+                }
+                double trackedScoreSum = matching.getScoreSum(gradingStrategy);
+                if (Math.abs(trackedScoreSum - scoreSum) > 1e-4 * Math.max(1, matching.getHouseholds().size())) {
+                    violations.add("Tracked score sum for " + gradingStrategy + " is " + trackedScoreSum
+                            + ", but the grades add up to " + scoreSum + ".");
+                }
+            }
+        }
+
+        for (Household household : matching.getHouseholdsWithPriority()) {
+            if (matching.getHousehold(household.getID()) != household) {
+                violations.add("Priority household " + household.getID() + " is not part of the matching.");
+            }
+        }
+        for (Household household : matching.getElderlyHouseholds()) {
+            if (matching.getHousehold(household.getID()) != household) {
+                violations.add("Elderly household " + household.getID() + " is not part of the matching.");
+            }
+        }
+        return violations;
+    }
+}
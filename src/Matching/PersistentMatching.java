@@ -0,0 +1,260 @@
+package Matching;
+
+import HousingMarket.House.House;
+import HousingMarket.Household.Household;
+import HousingMarket.HousingMarket;
+import Main.Grader;
+import Main.GradingStrategy;
+import Miscellaneous.IntBitSet;
+import Miscellaneous.PersistentIntArray;
+
+import java.io.Serializable;
+import java.util.*;
+
+// Immutable counterpart of Matching, meant for exploring many what-if branches over one base market.
+// The vertex set is fixed when the PersistentMatching is created from a Matching. All branches share that vertex data
+// and the Grader, and only hold their own house <-> household assignment, stored in two PersistentIntArrays.
+// Branching off is therefore just keeping another reference (O(1)); _connect_ and _disconnect_ return a new branch and
+// copy O(log n) nodes, leaving the branch they were called on untouched.
+public final class PersistentMatching implements Serializable {
+
+    private static final int NONE = AssignmentStore.NONE;
+
+    private final SharedVertices vertices;
+    private final PersistentIntArray householdOfHouse;
+    private final PersistentIntArray houseOfHousehold;
+    private final int edgeCount;
+
+    public PersistentMatching(Matching matching) throws Matching.HouseholdLinkedToMultipleException, Matching.HouseholdLinkedToHouseholdException {
+        this.vertices = new SharedVertices(matching);
+        int[] householdOfHouse = new int[vertices.capacity];
+        int[] houseOfHousehold = new int[vertices.capacity];
+        int edgeCount = 0;
+        for (Household household : matching.getHouseholds()) {
+            House house = matching.getHouseFromHousehold(household.getID());
+            if (house != null) {
+                householdOfHouse[house.getID()] = household.getID();
+                houseOfHousehold[household.getID()] = house.getID();
+                edgeCount++;
+            }
+        }
+        this.householdOfHouse = PersistentIntArray.of(householdOfHouse);
+        this.houseOfHousehold = PersistentIntArray.of(houseOfHousehold);
+        this.edgeCount = edgeCount;
+    }
+
+    private PersistentMatching(SharedVertices vertices, PersistentIntArray householdOfHouse,
+                               PersistentIntArray houseOfHousehold, int edgeCount) {
+        this.vertices = vertices;
+        this.householdOfHouse = householdOfHouse;
+        this.houseOfHousehold = houseOfHousehold;
+        this.edgeCount = edgeCount;
+    }
+
+    // Throws the same exceptions as Matching.connect, so that callers can handle both kinds of matching alike.
+    public PersistentMatching connect(int houseID, int householdID) throws Matching.HouseAlreadyMatchedException, Matching.HouseholdAlreadyMatchedException {
+        House house = getHouse(houseID);
+        Household household = getHousehold(householdID);
+        if (getHouseholdID(house.getID()) != NONE) {
+            throw exceptionOwner().new HouseAlreadyMatchedException("Error: House " + house.toString() + " is already matched!");
+        } else if (getHouseID(household.getID()) != NONE) {
+            throw exceptionOwner().new HouseholdAlreadyMatchedException("Error: Household " + household.toString() + " is already matched!");
+        }
+        return new PersistentMatching(vertices,
+                householdOfHouse.set(houseID, householdID),
+                houseOfHousehold.set(householdID, houseID),
+                edgeCount + 1);
+    }
+
+    // Returns this same branch if the house and household were not matched to each other.
+    public PersistentMatching disconnect(int houseID, int householdID) {
+        if (householdID == NONE || getHouseholdID(houseID) != householdID) {
+            return this;
+        }
+        return new PersistentMatching(vertices,
+                householdOfHouse.set(houseID, NONE),
+                houseOfHousehold.set(householdID, NONE),
+                edgeCount - 1);
+    }
+
+    // Moves a household to a householdless house, giving up whatever house it had before.
+    public PersistentMatching move(int householdID, int newHouseID) throws Matching.HouseAlreadyMatchedException, Matching.HouseholdAlreadyMatchedException {
+        return disconnect(getHouseID(householdID), householdID).connect(newHouseID, householdID);
+    }
+
+    // Returns the ID of the household living in the house, or 0 if there is none.
+    public int getHouseholdID(int houseID) {
+        if (houseID < 0 || houseID >= householdOfHouse.length()) {
+            return NONE;
+        }
+        return householdOfHouse.get(houseID);
+    }
+
+    // Returns the ID of the house the household lives in, or 0 if there is none.
+    public int getHouseID(int householdID) {
+        if (householdID < 0 || householdID >= houseOfHousehold.length()) {
+            return NONE;
+        }
+        return houseOfHousehold.get(householdID);
+    }
+
+    public Household getHouseholdFromHouse(int houseID) {
+        return getHousehold(getHouseholdID(houseID));
+    }
+
+    public House getHouseFromHousehold(int householdID) {
+        return getHouse(getHouseID(householdID));
+    }
+
+    public boolean hasEdge(int houseID, int householdID) {
+        return householdID != NONE && getHouseholdID(houseID) == householdID;
+    }
+
+    public House getHouse(int id) {
+        if (id < 0 || id >= vertices.housesByID.length) {
+            return null;
+        }
+        return vertices.housesByID[id];
+    }
+
+    public Household getHousehold(int id) {
+        if (id < 0 || id >= vertices.householdsByID.length) {
+            return null;
+        }
+        return vertices.householdsByID[id];
+    }
+
+    public List<House> getHouses() {
+        return vertices.houses;
+    }
+
+    public List<Household> getHouseholds() {
+        return vertices.households;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    // In ascending order of ID, like those of a Matching. Unlike those, which are live views, this is a new set that is
+    // built by checking every house: O(n) per call, so keep the result rather than asking again in a loop.
+    public Set<Integer> getHouseholdlessHousesIDs() {
+        Set<Integer> result = new IntBitSet();
+        for (House house : vertices.houses) {
+            if (getHouseholdID(house.getID()) == NONE) {
+                result.add(house.getID());
+            }
+        }
+        return result;
+    }
+
+    // As getHouseholdlessHousesIDs: O(n) per call.
+    public Set<Integer> getHouselessHouseholdsIDs() {
+        Set<Integer> result = new IntBitSet();
+        for (Household household : vertices.households) {
+            if (getHouseID(household.getID()) == NONE) {
+                result.add(household.getID());
+            }
+        }
+        return result;
+    }
+
+    public Grader getGrader() {
+        return vertices.grader;
+    }
+
+    public HousingMarket getHousingMarket() {
+        return vertices.housingMarket;
+    }
+
+    public float grade(int houseID, int householdID, GradingStrategy gradingStrategy) {
+        return vertices.grader.apply(houseID, householdID, gradingStrategy);
+    }
+
+    public float gradeAverage(GradingStrategy gradingStrategy) {
+        float scoreSum = 0;
+        for (Household household : vertices.households) {
+            int houseID = getHouseID(household.getID());
+            if (houseID != NONE) {
+                scoreSum += grade(houseID, household.getID(), gradingStrategy);
+            }
+        }
+        return scoreSum / vertices.households.size();
+    }
+
+    // Materialises this branch as a regular, mutable Matching, e.g. to run one of the algorithms on it.
+    // The new Matching shares the House and Household objects and the Grader with this branch.
+    public Matching toMatching() throws Matching.HouseIDAlreadyPresentException, Matching.HouseholdIDAlreadyPresentException, Matching.HouseAlreadyMatchedException, Matching.HouseholdAlreadyMatchedException {
+        Matching matching = new Matching(vertices.housingMarket);
+        for (House house : vertices.houses) {
+            matching.addHouse(house);
+        }
+        for (Household household : vertices.households) {
+            matching.addHousehold(household);
+        }
+        for (Household household : vertices.households) {
+            int houseID = getHouseID(household.getID());
+            if (houseID != NONE) {
+                matching.connect(houseID, household.getID());
+            }
+        }
+        matching.setGrader(vertices.grader);
+        return matching;
+    }
+
+    public String toString() {
+        StringBuilder result = new StringBuilder(vertices.households.toString()).append(" -- (");
+        boolean first = true;
+        for (Household household : vertices.households) {
+            int houseID = getHouseID(household.getID());
+            if (houseID != NONE) {
+                if (!first) {
+                    result.append(", ");
+                }
+                result.append("{").append(houseID).append(",").append(household.getID()).append("}");
+                first = false;
+            }
+        }
+        return result.append(")").toString();
+    }
+
+    // Matching's exceptions are inner classes, so they need a Matching to belong to. Only their message is used, so a
+    // blank one does; it is only made when something is thrown.
+    private Matching exceptionOwner() {
+        return new Matching(vertices.housingMarket);
+    }
+
+    // Vertex data that all branches stemming from the same Matching have in common. Never changed after creation.
+    private static final class SharedVertices implements Serializable {
+        private final List<House> houses;
+        private final List<Household> households;
+        private final House[] housesByID;
+        private final Household[] householdsByID;
+        private final int capacity;
+        private final Grader grader;
+        private final HousingMarket housingMarket;
+
+        private SharedVertices(Matching matching) {
+            int maxID = 0;
+            for (House house : matching.getHouses()) {
+                maxID = Math.max(maxID, house.getID());
+            }
+            for (Household household : matching.getHouseholds()) {
+                maxID = Math.max(maxID, household.getID());
+            }
+            this.capacity = maxID + 1;
+            this.housesByID = new House[capacity];
+            this.householdsByID = new Household[capacity];
+            for (House house : matching.getHouses()) {
+                housesByID[house.getID()] = house;
+            }
+            for (Household household : matching.getHouseholds()) {
+                householdsByID[household.getID()] = household;
+            }
+            this.houses = Collections.unmodifiableList(new ArrayList<House>(matching.getHouses()));
+            this.households = Collections.unmodifiableList(new ArrayList<Household>(matching.getHouseholds()));
+            this.grader = matching.getGrader();
+            this.housingMarket = matching.getHousingMarket();
+        }
+    }
+}
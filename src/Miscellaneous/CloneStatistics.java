@@ -0,0 +1,183 @@
+package Miscellaneous;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+// Records, per calling site, how often state is copied, roughly how many bytes that copies, and how much wall and CPU
+// time it takes. Off unless running with -Dclone.statistics=true, in which case the numbers are published over JMX
+// under OBJECT_NAME, and Experimenter.runExperiments prints a summary at the end. When off, _copy_ and _copyList_ just
+// copy, so call sites can use them unconditionally.
+// Bytes are estimated from the sizes of the copied arrays and lists.
+public class CloneStatistics implements CloneStatisticsMXBean {
+
+    public static final String PROPERTY = "clone.statistics";
+    public static final String OBJECT_NAME = "Miscellaneous:type=CloneStatistics";
+    private static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    public enum Site {
+        DYNAMIC_MATCHING_SETUP,
+        DYNAMIC_MATCHING_RESET,
+        DYNAMIC_MATCHING_RESULT,
+        WOSMA,
+        MCPMA_RUNNER,
+        CYCLE_FINDER
+    }
+
+    private static final Site[] SITES = Site.values();
+    // Rough sizes on a 64-bit JVM with compressed references.
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    private static final CloneStatistics INSTANCE = new CloneStatistics();
+
+    private final LongAdder[] invocationCounts = newAdders();
+    private final LongAdder[] copiedBytes = newAdders();
+    private final LongAdder[] wallTimeNanos = newAdders();
+    private final LongAdder[] cpuTimeNanos = newAdders();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                System.err.println("Could not register clone statistics over JMX: " + e.getMessage());
+            }
+        }
+    }
+
+    private CloneStatistics() {
+    }
+
+    public static CloneStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    public static <T> T copy(Site site, T original, UnaryOperator<T> copier, ToLongFunction<T> byteEstimator) {
+        if (!ENABLED) {
+            return copier.apply(original);
+        }
+        long cpuStart = INSTANCE.currentCpuTime();
+        long wallStart = System.nanoTime();
+        T copy = copier.apply(original);
+        long wallNanos = System.nanoTime() - wallStart;
+        INSTANCE.record(site, byteEstimator.applyAsLong(original), wallNanos, INSTANCE.currentCpuTime() - cpuStart);
+        return copy;
+    }
+
+    // Shallow copy of a list; the elements themselves are shared.
+    public static <T> ArrayList<T> copyList(Site site, List<T> original) {
+        if (!ENABLED) {
+            return new ArrayList<T>(original);
+        }
+        long cpuStart = INSTANCE.currentCpuTime();
+        long wallStart = System.nanoTime();
+        ArrayList<T> copy = new ArrayList<T>(original);
+        long wallNanos = System.nanoTime() - wallStart;
+        INSTANCE.record(site, referenceArrayBytes(original.size()), wallNanos, INSTANCE.currentCpuTime() - cpuStart);
+        return copy;
+    }
+
+    public static long intArrayBytes(int length) {
+        return ARRAY_HEADER_BYTES + 4L * length;
+    }
+
+    public static long referenceArrayBytes(int length) {
+        return ARRAY_HEADER_BYTES + (long) REFERENCE_BYTES * length;
+    }
+
+    // Prints the summary to System.out, if statistics are enabled.
+    public static void printSummary() {
+        if (ENABLED) {
+            System.out.print(INSTANCE.getSummary());
+        }
+    }
+
+    public void record(Site site, long bytes, long wallNanos, long cpuNanos) {
+        int i = site.ordinal();
+        invocationCounts[i].increment();
+        copiedBytes[i].add(bytes);
+        wallTimeNanos[i].add(wallNanos);
+        cpuTimeNanos[i].add(cpuNanos);
+    }
+
+    long currentCpuTime() {
+        return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public Map<String, Long> getInvocationCounts() {
+        return toMap(invocationCounts);
+    }
+
+    public Map<String, Long> getCopiedBytes() {
+        return toMap(copiedBytes);
+    }
+
+    public Map<String, Long> getWallTimeNanos() {
+        return toMap(wallTimeNanos);
+    }
+
+    public Map<String, Long> getCpuTimeNanos() {
+        return toMap(cpuTimeNanos);
+    }
+
+    // One line per site that copied anything, most expensive (by wall time) first.
+    public String getSummary() {
+        List<Site> sites = new ArrayList<Site>();
+        for (Site site : SITES) {
+            if (invocationCounts[site.ordinal()].sum() > 0) {
+                sites.add(site);
+            }
+        }
+        sites.sort((a, b) -> Long.compare(wallTimeNanos[b.ordinal()].sum(), wallTimeNanos[a.ordinal()].sum()));
+        StringBuilder summary = new StringBuilder("Clone statistics (site: count, bytes, wall ms, CPU ms):\n");
+        if (sites.isEmpty()) {
+            summary.append("  No copies recorded.\n");
+        }
+        for (Site site : sites) {
+            int i = site.ordinal();
+            summary.append(String.format("  %s: %d, %d, %.3f, %.3f%n", site, invocationCounts[i].sum(),
+                    copiedBytes[i].sum(), wallTimeNanos[i].sum() / 1e6, cpuTimeNanos[i].sum() / 1e6));
+        }
+        return summary.toString();
+    }
+
+    public void reset() {
+        for (int i = 0; i < SITES.length; i++) {
+            invocationCounts[i].reset();
+            copiedBytes[i].reset();
+            wallTimeNanos[i].reset();
+            cpuTimeNanos[i].reset();
+        }
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[SITES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static Map<String, Long> toMap(LongAdder[] adders) {
+        Map<String, Long> map = new LinkedHashMap<String, Long>();
+        for (Site site : SITES) {
+            map.put(site.name(), adders[site.ordinal()].sum());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,21 @@
+package Miscellaneous;
+
+import java.util.Map;
+
+// Management interface of CloneStatistics. All maps are keyed by the name of a CloneStatistics.Site.
+public interface CloneStatisticsMXBean {
+
+    boolean isEnabled();
+
+    Map<String, Long> getInvocationCounts();
+
+    Map<String, Long> getCopiedBytes();
+
+    Map<String, Long> getWallTimeNanos();
+
+    Map<String, Long> getCpuTimeNanos();
+
+    String getSummary();
+
+    void reset();
+}
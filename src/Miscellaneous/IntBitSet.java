@@ -0,0 +1,142 @@
+package Miscellaneous;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Set of non-negative ints as a bitset, with constant time add, remove and contains, and no boxing on the primitive
+// methods. Iterates in ascending order, so that the order only depends on the members and not on the order in which
+// they were added and removed; algorithms that break ties by iteration order thus do so reproducibly.
+// Iterating takes time in proportion to the size plus the largest member over 64.
+public class IntBitSet extends AbstractSet<Integer> implements Serializable {
+
+    private long[] words;
+    private int size = 0;
+    private transient int modCount = 0;
+
+    public IntBitSet() {
+        this(64);
+    }
+
+    // Room for members below _initialCapacity_ without growing.
+    public IntBitSet(int initialCapacity) {
+        this.words = new long[Math.max((initialCapacity + 63) >>> 6, 1)];
+    }
+
+    public IntBitSet(IntBitSet other) {
+        this.words = other.words.clone();
+        this.size = other.size;
+    }
+
+    public boolean addInt(int value) {
+        if (containsInt(value)) {
+            return false;
+        }
+        int word = value >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << value;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    public boolean removeInt(int value) {
+        if (!containsInt(value)) {
+            return false;
+        }
+        words[value >>> 6] &= ~(1L << value);
+        size--;
+        modCount++;
+        return true;
+    }
+
+    public boolean containsInt(int value) {
+        return value >= 0 && (value >>> 6) < words.length && (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    // The smallest member that is _from_ or more, or -1 if there is none. Lets callers iterate without boxing:
+    // for (int i = set.nextInt(0); i >= 0; i = set.nextInt(i + 1)).
+    public int nextInt(int from) {
+        int word = from >>> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while (bits == 0) {
+            word++;
+            if (word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    public int[] toIntArray() {
+        int[] result = new int[size];
+        int i = 0;
+        for (int value = nextInt(0); value >= 0; value = nextInt(value + 1)) {
+            result[i] = value;
+            i++;
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && containsInt((Integer) o);
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return addInt(value);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && removeInt((Integer) o);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int next = nextInt(0);
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Integer next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int value = next;
+                next = nextInt(value + 1);
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package Miscellaneous;
+
+import java.io.Serializable;
+
+// Immutable fixed-length int array. _set_ returns a new array that shares all but the changed path with this one.
+// Stored as a 32-way trie: leaves are int[32], inner nodes Object[32]; a null node stands for a subtree of zeroes.
+// Reads and writes touch O(log_32(length)) nodes.
+public final class PersistentIntArray implements Serializable {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private final int length;
+    private final int shift; // Bit offset of the root level; 0 if the root is a leaf.
+    private final Object root;
+
+    // Creates an array of _length_ zeroes. Costs O(1), since all-zero subtrees are not materialised.
+    public PersistentIntArray(int length) {
+        this(length, shiftFor(length), null);
+    }
+
+    private PersistentIntArray(int length, int shift, Object root) {
+        this.length = length;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    // Builds the trie bottom-up in O(n), rather than through n calls to _set_.
+    public static PersistentIntArray of(int[] values) {
+        int shift = shiftFor(values.length);
+        return new PersistentIntArray(values.length, shift, build(values, 0, shift));
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        Object node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            if (node == null) {
+                return 0;
+            }
+            node = ((Object[]) node)[(index >>> level) & MASK];
+        }
+        if (node == null) {
+            return 0;
+        }
+        return ((int[]) node)[index & MASK];
+    }
+
+    public PersistentIntArray set(int index, int value) {
+        if (get(index) == value) {
+            return this;
+        }
+        return new PersistentIntArray(length, shift, setIn(root, shift, index, value));
+    }
+
+    private static Object setIn(Object node, int level, int index, int value) {
+        if (level == 0) {
+            int[] leaf = node == null ? new int[WIDTH] : ((int[]) node).clone();
+            leaf[index & MASK] = value;
+            return leaf;
+        }
+        Object[] branch = node == null ? new Object[WIDTH] : ((Object[]) node).clone();
+        int slot = (index >>> level) & MASK;
+        branch[slot] = setIn(branch[slot], level - BITS, index, value);
+        return branch;
+    }
+
+    private static Object build(int[] values, int offset, int level) {
+        if (offset >= values.length) {
+            return null;
+        }
+        if (level == 0) {
+            int[] leaf = new int[WIDTH];
+            boolean allZero = true;
+            for (int i = 0; i < WIDTH && offset + i < values.length; i++) {
+                leaf[i] = values[offset + i];
+                allZero &= leaf[i] == 0;
+            }
+            return allZero ? null : leaf;
+        }
+        Object[] branch = new Object[WIDTH];
+        int span = 1 << level;
+        for (int i = 0; i < WIDTH; i++) {
+            branch[i] = build(values, offset + i * span, level - BITS);
+        }
+        return branch;
+    }
+
+    private static int shiftFor(int length) {
+        int shift = 0;
+        while (((Math.max(length, 1) - 1) >>> (shift + BITS)) > 0) {
+            shift += BITS;
+        }
+        return shift;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+    }
+}